@@ -46,13 +46,28 @@ import java.util.Arrays;
  * <li>Write the thus formed stream of characters as a stream of bytes, using
  * ASCII encoding</li>
  * </ol>
+ * <p>
+ * Besides single characters, blocks of {@link #BLOCK_CHARS} characters
+ * (48 bits) can be converted to and from {@link #BLOCK_BYTES} base 64
+ * characters at once. Blocks are looked up 12 bits (2 base 64 characters)
+ * at a time.
+ * </p>
  * 
  * @author Jaap Beetstra
  */
 class Base64Util {
+	/** number of base 64 characters a block consists of */
+	static final int BLOCK_BYTES = 8;
+	/** number of characters encoded in a block */
+	static final int BLOCK_CHARS = 3;
 	private static final int ALPHABET_LENGTH = 64;
+	private static final long NON_ASCII = 0x8080808080808080L;
 	private final char[] alphabet;
 	private final int[] inverseAlphabet;
+	// 2 sextets (12 bits) by 2 7-bit ASCII bytes, -1 if not in the alphabet
+	private final short[] pairToBits;
+	// 2 base 64 characters (first in the high byte) by 12 bits
+	private final short[] bitsToPair;
 
 	/**
 	 * Initializes the class with the specified encoding/decoding alphabet.
@@ -69,7 +84,7 @@ class Base64Util {
 				"alphabet has incorrect length (should be 64, not "
 					+ alphabet.length() + ")");
 		}
-		inverseAlphabet = new int[128];
+		inverseAlphabet = new int[256];
 		Arrays.fill(inverseAlphabet, -1);
 		for (int i = 0; i < this.alphabet.length; i++ ) {
 			final char ch = this.alphabet[i];
@@ -78,6 +93,17 @@ class Base64Util {
 			}
 			inverseAlphabet[ch] = i;
 		}
+		pairToBits = new short[128 * 128];
+		for (int i = 0; i < pairToBits.length; i++ ) {
+			int hi = inverseAlphabet[i >>> 7];
+			int lo = inverseAlphabet[i & 0x7F];
+			pairToBits[i] = (short) (hi < 0 || lo < 0 ? -1 : hi << 6 | lo);
+		}
+		bitsToPair = new short[ALPHABET_LENGTH * ALPHABET_LENGTH];
+		for (int i = 0; i < bitsToPair.length; i++ ) {
+			bitsToPair[i] = (short) (this.alphabet[i >>> 6] << 8 
+				| this.alphabet[i & 0x3F]);
+		}
 	}
 
 	/**
@@ -86,10 +112,10 @@ class Base64Util {
 	 * 
 	 * @param ch	The character, as a ASCII encoded byte
 	 * @return The six bits, as an integer value, or -1 if the byte is not in
-	 *         the alphabet
+	 *         the alphabet (which includes all bytes &gt;= 0x80)
 	 */
 	int getSextet(final byte ch) {
-		return ch >= 128 ? -1 : inverseAlphabet[ch];
+		return inverseAlphabet[ch & 0xFF];
 	}
 
 	/**
@@ -98,7 +124,7 @@ class Base64Util {
 	 * @param ch	The character to check.
 	 * @return {@code true} if the alphabet contains <code>ch</code>.
 	 * @throws ArrayIndexOutOfBoundsException if the given char is not in the
-	 * 	range of 0 .. 128
+	 * 	range of 0 .. 255
 	 */
 	boolean contains(final char ch) {
 		return inverseAlphabet[ch] >= 0;
@@ -113,4 +139,118 @@ class Base64Util {
 	byte getChar(final int sextet) {
 		return (byte) alphabet[sextet];
 	}
+
+	/**
+	 * Decodes a block of {@link #BLOCK_BYTES} base 64 characters.
+	 * 
+	 * @param src	The ASCII encoded base 64 characters
+	 * @param i	The index of the first character of the block
+	 * @return The {@link #BLOCK_CHARS} characters of the block, the first one
+	 * 	in bits 32..47, or -1 if any byte is not in the alphabet
+	 */
+	long decodeBlock(final byte[] src, final int i) {
+		if ((src[i] | src[i + 1] | src[i + 2] | src[i + 3] | src[i + 4]
+			| src[i + 5] | src[i + 6] | src[i + 7]) < 0)
+		{
+			return -1;
+		}
+		final int hi = pairToBits[src[i] << 7 | src[i + 1]] << 12
+			| pairToBits[src[i + 2] << 7 | src[i + 3]];
+		final int lo = pairToBits[src[i + 4] << 7 | src[i + 5]] << 12
+			| pairToBits[src[i + 6] << 7 | src[i + 7]];
+		return (hi | lo) < 0 ? -1 : (long) hi << 24 | lo;
+	}
+
+	/**
+	 * Decodes a block of {@link #BLOCK_BYTES} base 64 characters.
+	 * 
+	 * @param src	The base 64 characters
+	 * @param i	The index of the first character of the block
+	 * @return The {@link #BLOCK_CHARS} characters of the block, the first one
+	 * 	in bits 32..47, or -1 if any character is not in the alphabet
+	 */
+	long decodeBlock(final CharSequence src, final int i) {
+		final char c0 = src.charAt(i);
+		final char c1 = src.charAt(i + 1);
+		final char c2 = src.charAt(i + 2);
+		final char c3 = src.charAt(i + 3);
+		final char c4 = src.charAt(i + 4);
+		final char c5 = src.charAt(i + 5);
+		final char c6 = src.charAt(i + 6);
+		final char c7 = src.charAt(i + 7);
+		if ((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) >= 128) {
+			return -1;
+		}
+		final int hi = pairToBits[c0 << 7 | c1] << 12 | pairToBits[c2 << 7 | c3];
+		final int lo = pairToBits[c4 << 7 | c5] << 12 | pairToBits[c6 << 7 | c7];
+		return (hi | lo) < 0 ? -1 : (long) hi << 24 | lo;
+	}
+
+	/**
+	 * Decodes a block of {@link #BLOCK_BYTES} base 64 characters.
+	 * 
+	 * @param word	The ASCII encoded base 64 characters, the first one in
+	 * 	the most significant byte
+	 * @return The {@link #BLOCK_CHARS} characters of the block, the first one
+	 * 	in bits 32..47, or -1 if any byte is not in the alphabet
+	 */
+	long decodeBlock(final long word) {
+		if ((word & NON_ASCII) != 0) {
+			return -1;
+		}
+		final int hi = pairToBits[(int) (word >>> 49) & 0x3F80 
+				| (int) (word >>> 48) & 0x7F] << 12
+			| pairToBits[(int) (word >>> 33) & 0x3F80 
+				| (int) (word >>> 32) & 0x7F];
+		final int lo = pairToBits[(int) (word >>> 17) & 0x3F80 
+				| (int) (word >>> 16) & 0x7F] << 12
+			| pairToBits[(int) (word >>> 1) & 0x3F80 | (int) word & 0x7F];
+		return (hi | lo) < 0 ? -1 : (long) hi << 24 | lo;
+	}
+
+	/**
+	 * Encodes a block of {@link #BLOCK_CHARS} characters.
+	 * 
+	 * @param bits	The characters to encode, the first one in bits 32..47
+	 * @param dst	The array to store the base 64 characters in
+	 * @param i	The index to store the first of {@link #BLOCK_BYTES} base 64 
+	 * 	characters at
+	 */
+	void encodeBlock(final long bits, final byte[] dst, final int i) {
+		for (int k = 0, bit = 36; k < BLOCK_BYTES; k += 2, bit -= 12) {
+			final short pair = bitsToPair[(int) (bits >>> bit) & 0xFFF];
+			dst[i + k] = (byte) (pair >> 8);
+			dst[i + k + 1] = (byte) pair;
+		}
+	}
+
+	/**
+	 * Encodes a block of {@link #BLOCK_CHARS} characters.
+	 * 
+	 * @param bits	The characters to encode, the first one in bits 32..47
+	 * @param dst	The array to store the base 64 characters in
+	 * @param i	The index to store the first of {@link #BLOCK_BYTES} base 64 
+	 * 	characters at
+	 */
+	void encodeBlock(final long bits, final char[] dst, final int i) {
+		for (int k = 0, bit = 36; k < BLOCK_BYTES; k += 2, bit -= 12) {
+			final short pair = bitsToPair[(int) (bits >>> bit) & 0xFFF];
+			dst[i + k] = (char) (pair >> 8);
+			dst[i + k + 1] = (char) (pair & 0xFF);
+		}
+	}
+
+	/**
+	 * Encodes a block of {@link #BLOCK_CHARS} characters.
+	 * 
+	 * @param bits	The characters to encode, the first one in bits 32..47
+	 * @return The {@link #BLOCK_BYTES} base 64 characters, the first one in
+	 * 	the most significant byte
+	 */
+	long encodeBlock(final long bits) {
+		return (long) bitsToPair[(int) (bits >>> 36) & 0xFFF] << 48
+			| (long) bitsToPair[(int) (bits >>> 24) & 0xFFF] << 32
+			| (long) bitsToPair[(int) (bits >>> 12) & 0xFFF] << 16
+			| bitsToPair[(int) bits & 0xFFF];
+	}
 }
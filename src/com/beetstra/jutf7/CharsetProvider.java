@@ -39,55 +39,95 @@ import java.util.Locale;
 public class CharsetProvider
 	extends java.nio.charset.spi.CharsetProvider
 {
-	private static final String UTF7_NAME = "UTF-7";
-	private static final String UTF7_O_NAME = "X-UTF-7-OPTIONAL";
-	private static final String UTF7_M_NAME = "X-MODIFIED-UTF-7";
-	
-	private static final String[] UTF7_ALIASES = new String[] {
-		"UNICODE-1-1-UTF-7", "CSUNICODE11UTF7", "X-RFC2152", "X-RFC-2152" , "UTF7",
-		"UNICODE-2-0-UTF-7"
-	};
-	
-	private static final String[] UTF7_O_ALIASES = new String[] {
-		"X-RFC2152-OPTIONAL", "X-RFC-2152-OPTIONAL", 
-		"UTF-7-OPTIONAL", "UTF-7O", "UTF7O", "UTF-7-O" 
-	};
-	private static final String[] UTF7_M_ALIASES = new String[] {
-		"X-IMAP-MODIFIED-UTF-7", "X-IMAP4-MODIFIED-UTF7",
-		"X-IMAP4-MODIFIED-UTF-7", "X-RFC3501", "X-RFC-3501" , 
-		"IMAP-UTF-7", "IMAP-UTF7"
-	};
-
-	private Charset utf7charset = 
-		new UTF7Charset(UTF7_NAME, UTF7_ALIASES, false);
-	private Charset utf7oCharset = 
-		new UTF7Charset(UTF7_O_NAME, UTF7_O_ALIASES, true);
-	private Charset imap4charset = 
-		new ModifiedUTF7Charset(UTF7_M_NAME, UTF7_M_ALIASES);
+	private static final Charset[] CHARSETS = { UTF7Charsets.UTF_7, 
+		UTF7Charsets.IMAP_UTF_7, UTF7Charsets.UTF_7_OPTIONAL };
+	// open addressing index of all names and aliases, in upper case
+	private static final String[] NAMES;
+	private static final Charset[] NAMED;
+	static {
+		int n = 0;
+		for (Charset charset : CHARSETS) {
+			n += 1 + charset.aliases().size();
+		}
+		// a power of 2 with at most 1/4 of the slots used, keeps probes short
+		final int size = Integer.highestOneBit(n * 4 - 1) << 1;
+		NAMES = new String[size];
+		NAMED = new Charset[size];
+		// canonical names take precedence over aliases
+		for (Charset charset : CHARSETS) {
+			index(charset.name(), charset);
+		}
+		for (Charset charset : CHARSETS) {
+			for (String alias : charset.aliases()) {
+				index(alias, charset);
+			}
+		}
+	}
 	private List<Charset> charsets;
 
 	/**
 	 * Initialize a new Charset Provider for UTF-7 and its derivates.
 	 */
 	public CharsetProvider() {
-		charsets = Arrays.asList(utf7charset, imap4charset, utf7oCharset);
+		charsets = Arrays.asList(CHARSETS);
+	}
+
+	private static void index(final String name, final Charset charset) {
+		final String key = name.toUpperCase(Locale.US);
+		int i = hash(key) & (NAMES.length - 1);
+		while (NAMES[i] != null) {
+			if (NAMES[i].equals(key)) {
+				return;
+			}
+			i = (i + 1) & (NAMES.length - 1);
+		}
+		NAMES[i] = key;
+		NAMED[i] = charset;
+	}
+
+	/**
+	 * Get the hash of the given name, the same for all cases of its ASCII
+	 * letters.
+	 * 
+	 * @param name	The name to hash
+	 * @return the hash.
+	 */
+	private static int hash(final String name) {
+		int h = 0;
+		for (int i = 0; i < name.length(); i++ ) {
+			h = 31 * h + upper(name.charAt(i));
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static char upper(final char ch) {
+		return ch >= 'a' && ch <= 'z' ? (char) (ch - ('a' - 'A')) : ch;
 	}
 
 	/**
 	 * {@inheritDoc}
+	 * <p>
+	 * Names are compared ignoring the case of ASCII letters, without creating
+	 * an upper case copy of the given name.
 	 */
 	@Override
-	public Charset charsetForName(String charsetName) {
-		charsetName = charsetName.toUpperCase(Locale.US);
-		for (Charset charset : charsets) {
-			if (charset.name().equals(charsetName)) {
-				return charset;
-			}
-		}
-		for (Charset charset : charsets) {
-			if (charset.aliases().contains(charsetName)) {
-				return charset;
+	public Charset charsetForName(final String charsetName) {
+		final int length = charsetName.length();
+		int i = hash(charsetName) & (NAMES.length - 1);
+		String key;
+		while ((key = NAMES[i]) != null) {
+			if (key.length() == length) {
+				int k = 0;
+				while (k < length 
+					&& key.charAt(k) == upper(charsetName.charAt(k)))
+				{
+					k++;
+				}
+				if (k == length) {
+					return NAMED[i];
+				}
 			}
+			i = (i + 1) & (NAMES.length - 1);
 		}
 		return null;
 	}
@@ -108,11 +148,11 @@ public class CharsetProvider
 		if (args.length < 2) {
 			showUsage();
 		} else if ("encode".equalsIgnoreCase(args[0])) {
-			byte[] encoded = args[1].getBytes(UTF7_NAME);
+			byte[] encoded = args[1].getBytes(UTF7Charsets.UTF_7.name());
 			System.out.println(new String(encoded, "US-ASCII"));
 		} else if ("decode".equalsIgnoreCase(args[0])) {
 			byte[] bytes = args[1].getBytes("US-ASCII");
-			System.out.println(new String(bytes, UTF7_NAME));
+			System.out.println(new String(bytes, UTF7Charsets.UTF_7.name()));
 		} else
 			showUsage();
 	}
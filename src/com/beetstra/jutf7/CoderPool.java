@@ -0,0 +1,99 @@
+/* ====================================================================
+ * Copyright (c) 2006 J.T. Beetstra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining 
+ * a copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including 
+ * without limitation the rights to use, copy, modify, merge, publish, 
+ * distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to 
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be 
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY 
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, 
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * ====================================================================
+ */
+package com.beetstra.jutf7;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A small lock-free pool of coders. Idle coders are kept in a fixed number of
+ * slots, a few per processor. A thread starts probing at the slot its id
+ * hashes to, so concurrent threads mostly touch different slots. Nothing is
+ * kept per thread, which would waste memory with many (virtual) threads.
+ * If no idle coder is found, a new one gets created; if no free slot is 
+ * found, a returned coder is dropped. So the pool never blocks and never
+ * holds more than its number of slots.
+ * 
+ * @param <T>	The type of the pooled coders
+ * @author Jens Elkner
+ */
+abstract class CoderPool<T> {
+	private static final int SLOTS_PER_CPU = 4;
+	// slots probed by a single take or give
+	private static final int PROBES = 2;
+	private final AtomicReferenceArray<T> slots;
+	private final int mask;
+
+	CoderPool() {
+		final int n = Runtime.getRuntime().availableProcessors() * SLOTS_PER_CPU;
+		// a power of 2 >= n
+		final int size = Integer.highestOneBit(n - 1) << 1;
+		this.slots = new AtomicReferenceArray<T>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Creates a new coder, if none is idle.
+	 * 
+	 * @return a new coder in its initial state.
+	 */
+	abstract T create();
+
+	/**
+	 * Get an idle coder, or a new one if there is none.
+	 * 
+	 * @return a coder in its initial state.
+	 */
+	final T take() {
+		final int start = start();
+		for (int i = 0; i < PROBES; i++ ) {
+			final int slot = (start + i) & mask;
+			final T t = slots.get(slot);
+			if (t != null && slots.compareAndSet(slot, t, null)) {
+				return t;
+			}
+		}
+		return create();
+	}
+
+	/**
+	 * Keeps the given coder for a later {@link #take()}, if there is room.
+	 * 
+	 * @param t	The coder, which must be in its initial state.
+	 */
+	final void give(final T t) {
+		final int start = start();
+		for (int i = 0; i < PROBES; i++ ) {
+			final int slot = (start + i) & mask;
+			if (slots.get(slot) == null && slots.compareAndSet(slot, null, t)) {
+				return;
+			}
+		}
+	}
+
+	private int start() {
+		// thread ids are sequential, spread them over the slots
+		final long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) (id >>> 32);
+	}
+}
@@ -23,6 +23,8 @@
  */
 package com.beetstra.jutf7;
 
+import java.nio.charset.CharsetEncoder;
+
 /**
  * The character set specified in RFC 3501 to use for IMAP4rev1 mailbox name
  * encoding.
@@ -35,14 +37,25 @@ class ModifiedUTF7Charset
 {
 	private static final String MODIFIED_BASE64_ALPHABET = 
 		"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+,";
+	// printable US-ASCII except '&'
+	private static final String DIRECT = 
+		" !\"#$%'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`"
+		+ "abcdefghijklmnopqrstuvwxyz{|}~";
 
 	ModifiedUTF7Charset(String name, String[] aliases) {
-		super(name, aliases, MODIFIED_BASE64_ALPHABET, true);
+		super(name, aliases, MODIFIED_BASE64_ALPHABET, true, DIRECT);
 	}
 
+	/**
+	 * RFC 3501 requires printable US-ASCII chars except '&amp;' to represent
+	 * themselves, so these must not be base 64 encoded.
+	 * 
+	 * @throws UnsupportedOperationException always
+	 */
 	@Override
-	boolean canEncodeDirectly(char ch) {
-		return ch <= 0x7E && ch >= 0x20 && ch != shift();
+	public CharsetEncoder newSizeOptimalEncoder() {
+		throw new UnsupportedOperationException(name() 
+			+ " encodes all printable US-ASCII chars directly");
 	}
 
 	@Override
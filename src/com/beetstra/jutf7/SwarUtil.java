@@ -0,0 +1,180 @@
+/* ====================================================================
+ * Copyright (c) 2006 J.T. Beetstra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining 
+ * a copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including 
+ * without limitation the rights to use, copy, modify, merge, publish, 
+ * distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to 
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be 
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY 
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, 
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * ====================================================================
+ */
+package com.beetstra.jutf7;
+
+/**
+ * Helpers to classify several bytes or characters packed into a single
+ * <code>long</code> at once (SIMD within a register, SWAR). A word of bytes
+ * is expected to be read in the byte order of the buffer it was read from, so
+ * results are reported in memory order, i.e. index 0 denotes the byte at the
+ * lowest address. Characters are packed using {@link #pack}.
+ * 
+ * @author Jens Elkner
+ */
+final class SwarUtil {
+	private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+	private static final long HIGH = 0x8080808080808080L;
+	private static final long ONES = 0x0101010101010101L;
+	// per 16-bit lane constants
+	private static final long CHAR_NON_ASCII = 0xFF80FF80FF80FF80L;
+	private static final long CHAR_ONES = 0x0001000100010001L;
+	private static final long CHAR_HIGH = 0x0080008000800080L;
+
+	private SwarUtil() {
+		// no instances
+	}
+
+	/**
+	 * Get a word, which has the given byte in each of its 8 bytes.
+	 * 
+	 * @param b	The byte to replicate
+	 * @return the pattern to use for {@link #indexOfStop}
+	 */
+	static long pattern(final byte b) {
+		return (b & 0xFF) * ONES;
+	}
+
+	/**
+	 * Get the index of the first byte in the given word, which either equals
+	 * the byte replicated in <code>pattern</code> or is not a 7-bit ASCII
+	 * character.
+	 * 
+	 * @param word	The 8 bytes to scan
+	 * @param pattern	The stop byte as returned by {@link #pattern(byte)}
+	 * @param bigEndian	{@code true} if <code>word</code> was read in big
+	 * 	endian order
+	 * @return the index of the first matching byte, or 8 if there is none
+	 */
+	static int indexOfStop(final long word, final long pattern,
+		final boolean bigEndian)
+	{
+		long x = word ^ pattern;
+		// high bit set exactly in the bytes which are 0 in x
+		long stops = ~(((x & LOW7) + LOW7) | x | LOW7);
+		stops |= word & HIGH;
+		return (bigEndian 
+			? Long.numberOfLeadingZeros(stops) 
+			: Long.numberOfTrailingZeros(stops)) >>> 3;
+	}
+
+	/**
+	 * Get the index of the first byte in the given word, which equals the
+	 * byte replicated in <code>pattern</code>.
+	 * 
+	 * @param word	The 8 bytes to scan
+	 * @param pattern	The byte to find as returned by {@link #pattern(byte)}
+	 * @param bigEndian	{@code true} if <code>word</code> was read in big
+	 * 	endian order
+	 * @return the index of the first matching byte, or 8 if there is none
+	 */
+	static int indexOf(final long word, final long pattern,
+		final boolean bigEndian)
+	{
+		long x = word ^ pattern;
+		// high bit set exactly in the bytes which are 0 in x
+		long matches = ~(((x & LOW7) + LOW7) | x | LOW7);
+		return (bigEndian 
+			? Long.numberOfLeadingZeros(matches) 
+			: Long.numberOfTrailingZeros(matches)) >>> 3;
+	}
+
+	/**
+	 * Pack 4 characters into a word, one per 16-bit lane.
+	 * 
+	 * @param in	The characters
+	 * @param i	The index of the first character to pack
+	 * @return the packed characters, <code>in.charAt(i)</code> in the most
+	 * 	significant lane.
+	 */
+	static long pack(final CharSequence in, final int i) {
+		return (long) in.charAt(i) << 48 | (long) in.charAt(i + 1) << 32 
+			| (long) in.charAt(i + 2) << 16 | in.charAt(i + 3);
+	}
+
+	/**
+	 * Pack 4 characters into a word, one per 16-bit lane.
+	 * 
+	 * @param in	The characters
+	 * @param i	The index of the first character to pack
+	 * @return the packed characters, <code>in[i]</code> in the most
+	 * 	significant lane.
+	 */
+	static long pack(final char[] in, final int i) {
+		return (long) in[i] << 48 | (long) in[i + 1] << 32 
+			| (long) in[i + 2] << 16 | in[i + 3];
+	}
+
+	/**
+	 * Narrow 8 packed 7-bit ASCII characters to a word of bytes.
+	 * 
+	 * @param hi	The first 4 characters as returned by {@link #pack}
+	 * @param lo	The last 4 characters as returned by {@link #pack}
+	 * @param bigEndian	The byte order of the buffer the word gets written to
+	 * @return the bytes in memory order of the given byte order.
+	 */
+	static long narrow(final long hi, final long lo, final boolean bigEndian) {
+		long word = narrow(hi) << 32 | narrow(lo);
+		return bigEndian ? word : Long.reverseBytes(word);
+	}
+
+	private static long narrow(long chars) {
+		// 0a0b0c0d -> 00ab00cd -> 0000abcd
+		chars = (chars | chars >>> 8) & 0x0000FFFF0000FFFFL;
+		return (chars | chars >>> 16) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Tells whether all packed characters are 7-bit ASCII characters.
+	 * 
+	 * @param chars	The characters as returned by {@link #pack}
+	 * @return {@code true} if all characters are less than 0x80.
+	 */
+	static boolean isAscii(final long chars) {
+		return (chars & CHAR_NON_ASCII) == 0;
+	}
+
+	/**
+	 * Tells whether all packed characters are in the range of 
+	 * <code>min .. max</code> and not equal to <code>except</code>. All
+	 * characters are expected to be 7-bit ASCII characters already.
+	 * 
+	 * @param chars	The characters as returned by {@link #pack}
+	 * @param min	The lowest character in range (&gt; 0)
+	 * @param max	The highest character in range (&lt; 0x7F)
+	 * @param except	A character to exclude (&lt; 0x80)
+	 * @return {@code true} if all characters are in range.
+	 * @see #isAscii(long)
+	 */
+	static boolean isInRange(final long chars, final char min, final char max,
+		final char except)
+	{
+		// per lane: bit 7 gets set by adding (0x80 - min), iff ch >= min;
+		// it stays clear when adding (0x7F - max), iff ch <= max
+		long ge = chars + (0x80 - min) * CHAR_ONES;
+		long gt = chars + (0x7F - max) * CHAR_ONES;
+		// bit 7 gets set by adding 0x7F, iff ch ^ except != 0
+		long ne = (chars ^ except * CHAR_ONES) + 0x7F * CHAR_ONES;
+		return (ge & ~gt & ne & CHAR_HIGH) == CHAR_HIGH;
+	}
+}
@@ -42,24 +42,13 @@ class UTF7Charset
 	private static final String SET_O = 
 		"!\"#$%&*;<=>@[]^_`{|}";
 	private static final String RULE_3 = " \t\r\n";
-	private long direct0;
-	private long direct1;
 	private boolean debug = false;
 
 	UTF7Charset(String name, String[] aliases, boolean includeOptional) {
-		super(name, aliases, BASE64_ALPHABET, false);
-		char[] all = (includeOptional ? SET_D + SET_O + RULE_3 : SET_D + RULE_3)
-			.toCharArray();
-		direct0 = 0;
-		direct1 = 0;
-		for (int i=all.length-1; i >= 0; i--) {
-			if (all[i] < 64) {
-				direct0 |= 1L << all[i];
-			} else {
-				direct1 |= 1L << (all[i] - 64);
-			}
-		}
+		this(name, aliases, directChars(includeOptional));
 		if (debug) {
+			char[] all = (includeOptional ? SET_D + SET_O + RULE_3 : SET_D + RULE_3)
+				.toCharArray();
 			if (includeOptional) {
 				System.out.println("Optional");
 			} else {
@@ -76,11 +65,26 @@ class UTF7Charset
 		}
 	}
 
-	@Override
-	boolean canEncodeDirectly(char ch) {
-		return ch < 64
-			? (direct0 & (1L << ch)) != 0
-			: (ch < 128 ? (direct1 & (1L << (ch - 64))) != 0 : false);		
+	/**
+	 * Creates a UTF-7 profile with a custom set of directly encoded
+	 * characters, which must not contain the shift character.
+	 * 
+	 * @param name	The canonical name of the charset
+	 * @param aliases	The aliases of the charset
+	 * @param direct	The 7-bit ASCII characters encoded directly
+	 * @see UTF7Charsets.Builder
+	 */
+	UTF7Charset(String name, String[] aliases, String direct) {
+		super(name, aliases, BASE64_ALPHABET, false, direct);
+	}
+
+	/**
+	 * @param includeOptional	Whether to include the optional direct
+	 * 	characters (set O of RFC 2152)
+	 * @return the characters RFC 2152 allows to be encoded directly.
+	 */
+	static String directChars(boolean includeOptional) {
+		return includeOptional ? SET_D + SET_O + RULE_3 : SET_D + RULE_3;
 	}
 
 	@Override
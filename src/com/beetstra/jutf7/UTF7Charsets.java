@@ -0,0 +1,162 @@
+/* ====================================================================
+ * Copyright (c) 2006 J.T. Beetstra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining 
+ * a copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including 
+ * without limitation the rights to use, copy, modify, merge, publish, 
+ * distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to 
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be 
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY 
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, 
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * ====================================================================
+ */
+package com.beetstra.jutf7;
+
+/**
+ * The charsets provided by {@link CharsetProvider}. Using these constants
+ * avoids the lookup done by {@link java.nio.charset.Charset#forName(String)},
+ * which asks all installed providers once its small cache misses. The 
+ * provider returns the very same instances.
+ * 
+ * @author Jens Elkner
+ */
+public final class UTF7Charsets {
+	/** UTF-7 as defined in RFC 2152 */
+	public static final UTF7StyleCharset UTF_7 = new UTF7Charset("UTF-7",
+		new String[] { "UNICODE-1-1-UTF-7", "CSUNICODE11UTF7", "X-RFC2152",
+			"X-RFC-2152", "UTF7", "UNICODE-2-0-UTF-7" }, false);
+	/** 
+	 * UTF-7 as defined in RFC 2152, which also encodes the optional direct
+	 * characters directly 
+	 */
+	public static final UTF7StyleCharset UTF_7_OPTIONAL = new UTF7Charset(
+		"X-UTF-7-OPTIONAL", new String[] { "X-RFC2152-OPTIONAL", 
+			"X-RFC-2152-OPTIONAL", "UTF-7-OPTIONAL", "UTF-7O", "UTF7O", 
+			"UTF-7-O" }, true);
+	/** modified UTF-7 as defined in RFC 3501, used for IMAP mailbox names */
+	public static final UTF7StyleCharset IMAP_UTF_7 = new ModifiedUTF7Charset(
+		"X-MODIFIED-UTF-7", new String[] { "X-IMAP-MODIFIED-UTF-7", 
+			"X-IMAP4-MODIFIED-UTF7", "X-IMAP4-MODIFIED-UTF-7", "X-RFC3501", 
+			"X-RFC-3501", "IMAP-UTF-7", "IMAP-UTF7" });
+
+	private UTF7Charsets() {
+		// no instances
+	}
+
+	/**
+	 * Starts building a UTF-7 profile, which encodes a custom set of
+	 * characters directly. Initially this is the set of UTF-7 as defined in 
+	 * RFC 2152, without the optional direct characters.
+	 * 
+	 * @param canonicalName	The name of the charset to build
+	 * @return a new builder.
+	 */
+	public static Builder builder(String canonicalName) {
+		return new Builder(canonicalName);
+	}
+
+	/**
+	 * Builds UTF-7 profiles, which differ from {@link #UTF_7} in the 
+	 * characters encoded directly only. Decoding is the same for all 
+	 * profiles, since any 7-bit ASCII char besides the shift char '+' 
+	 * decodes to itself. The direct set gets compiled into the same lookup 
+	 * table the predefined charsets use. The resulting charsets are not 
+	 * available from {@link CharsetProvider}.
+	 */
+	public static final class Builder {
+		private final String canonicalName;
+		private String[] aliases = { };
+		private final boolean[] direct = new boolean[128];
+
+		Builder(String canonicalName) {
+			this.canonicalName = canonicalName;
+			setDirect(UTF7Charset.directChars(false), true);
+		}
+
+		/**
+		 * @param aliases	The aliases of the charset
+		 * @return this builder.
+		 */
+		public Builder aliases(String... aliases) {
+			this.aliases = aliases.clone();
+			return this;
+		}
+
+		/**
+		 * Encodes the optional direct characters (set O of RFC 2152) 
+		 * directly, like {@link UTF7Charsets#UTF_7_OPTIONAL}.
+		 * 
+		 * @return this builder.
+		 */
+		public Builder includeOptional() {
+			return setDirect(UTF7Charset.directChars(true), true);
+		}
+
+		/**
+		 * Encodes the given characters directly, e.g. '~' and '\', which
+		 * RFC 2152 excludes, for consumers known to accept them.
+		 * 
+		 * @param chars	The characters to encode directly
+		 * @return this builder.
+		 * @throws IllegalArgumentException if a char is not 7-bit ASCII or
+		 * 	is the shift char '+'.
+		 */
+		public Builder direct(String chars) {
+			return setDirect(chars, true);
+		}
+
+		/**
+		 * Base 64 encodes the given characters, even if they are in the set
+		 * encoded directly so far.
+		 * 
+		 * @param chars	The characters to base 64 encode
+		 * @return this builder.
+		 * @throws IllegalArgumentException if a char is not 7-bit ASCII or
+		 * 	is the shift char '+'.
+		 */
+		public Builder base64(String chars) {
+			return setDirect(chars, false);
+		}
+
+		private Builder setDirect(String chars, boolean value) {
+			for (int i = 0; i < chars.length(); i++ ) {
+				final char ch = chars.charAt(i);
+				if (ch >= direct.length || ch == '+') {
+					throw new IllegalArgumentException("char 0x" 
+						+ Integer.toHexString(ch) + " can't be encoded directly");
+				}
+			}
+			for (int i = 0; i < chars.length(); i++ ) {
+				direct[chars.charAt(i)] = value;
+			}
+			return this;
+		}
+
+		/**
+		 * @return a new charset encoding the characters set up directly.
+		 * @throws java.nio.charset.IllegalCharsetNameException if the name 
+		 * 	or an alias is illegal.
+		 */
+		public UTF7StyleCharset build() {
+			final StringBuilder chars = new StringBuilder(direct.length);
+			for (char ch = 0; ch < direct.length; ch++ ) {
+				if (direct[ch]) {
+					chars.append(ch);
+				}
+			}
+			return new UTF7Charset(canonicalName, aliases.clone(), 
+				chars.toString());
+		}
+	}
+}
@@ -0,0 +1,959 @@
+/* ====================================================================
+ * Copyright (c) 2006 J.T. Beetstra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining 
+ * a copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including 
+ * without limitation the rights to use, copy, modify, merge, publish, 
+ * distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to 
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be 
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY 
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, 
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * ====================================================================
+ */
+package com.beetstra.jutf7;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+
+/**
+ * One-shot encoding and decoding for the charsets provided by
+ * {@link CharsetProvider}. Other than {@link String#getBytes(String)} or
+ * {@link String#String(byte[], String)} no coder gets created per call and
+ * the results are exactly sized, so these are preferable for short texts
+ * like IMAP mailbox names.
+ * 
+ * @author Jens Elkner
+ */
+public final class UTF7Codec {
+	private UTF7Codec() {
+		// no instances
+	}
+
+	/**
+	 * Encodes the given text using UTF-7 (RFC 2152).
+	 * 
+	 * @param s	The text to encode
+	 * @return the encoded text.
+	 */
+	public static byte[] encode(String s) {
+		return UTF7Charsets.UTF_7.codec.encode(s);
+	}
+
+	/**
+	 * Encodes the given text using UTF-7 (RFC 2152) into a String,
+	 * without creating a byte array. The result holds a char per encoded 
+	 * byte, which is where a protocol built from Strings needs it.
+	 * 
+	 * @param s	The text to encode
+	 * @return the encoded text, <code>s</code> itself if it is a String 
+	 * 	that encodes to itself.
+	 */
+	public static String encodeToString(CharSequence s) {
+		return UTF7Charsets.UTF_7.codec.encodeToString(s);
+	}
+
+	/**
+	 * Get the exact number of bytes {@link #encode(String)} would
+	 * produce for the given text, without encoding it. An unshift
+	 * character is counted only where the encoder actually writes it.
+	 * 
+	 * @param s	The text to measure
+	 * @return the length of the UTF-7 encoded text.
+	 */
+	public static int encodedLength(CharSequence s) {
+		return UTF7Charsets.UTF_7.codec.encodedLength(s, 0, s.length());
+	}
+
+	/**
+	 * Encodes the given text using UTF-7 (RFC 2152)
+	 * into the given array, without allocating anything. Meant for output
+	 * buffers that get reused.
+	 * 
+	 * @param s	The text to encode
+	 * @param b	Where to store the encoded text
+	 * @param off	The index of <code>b</code> to store the first byte at
+	 * @return the number of bytes written or, if the encoded text does not
+	 * 	fit, minus the number of bytes missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws IndexOutOfBoundsException if <code>off</code> is negative or
+	 * 	greater than the length of <code>b</code>
+	 */
+	public static int encode(CharSequence s, byte[] b, int off) {
+		return UTF7Charsets.UTF_7.codec.encodeInto(s, b, off);
+	}
+
+	/**
+	 * Encodes the given text using UTF-7 (RFC 2152)
+	 * into the given buffer, without allocating anything. The encoded text
+	 * is stored starting at the position of the buffer, which is advanced by
+	 * the number of bytes written.
+	 * 
+	 * @param s	The text to encode
+	 * @param bb	Where to store the encoded text
+	 * @return the number of bytes written or, if the encoded text does not
+	 * 	fit, minus the number of bytes missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws java.nio.ReadOnlyBufferException if <code>bb</code> is read 
+	 * 	only, even if the text is empty or does not fit
+	 */
+	public static int encode(CharSequence s, ByteBuffer bb) {
+		return UTF7Charsets.UTF_7.codec.encodeInto(s, bb);
+	}
+
+	/**
+	 * Decodes the given UTF-7 (RFC 2152) encoded bytes.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @return the decoded text.
+	 * @throws MalformedInputException if the bytes are not valid UTF-7
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static String decode(byte[] b, int off, int len)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7.codec.decode(b, off, len);
+	}
+
+	/**
+	 * Decodes the given UTF-7 (RFC 2152) encoded text, a char per
+	 * encoded byte, without creating a byte array.
+	 * 
+	 * @param s	The text to decode
+	 * @return the decoded text, <code>s</code> itself if it is a String 
+	 * 	without any shift character.
+	 * @throws MalformedInputException if the text is not valid UTF-7
+	 */
+	public static String decode(CharSequence s)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7.codec.decode(s);
+	}
+
+	/**
+	 * Decodes the given UTF-7 (RFC 2152) encoded bytes into the given
+	 * array, without allocating anything.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param c	Where to store the decoded text
+	 * @param cOff	The index of <code>c</code> to store the first char at
+	 * @return the number of chars written or, if the decoded text does not
+	 * 	fit, minus the number of chars missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws MalformedInputException if the bytes are not valid UTF-7
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>, or if
+	 * 	<code>cOff</code> is not within <code>c</code>
+	 */
+	public static int decode(byte[] b, int off, int len, char[] c, 
+		int cOff) throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7.codec.decodeInto(b, off, len, c, cOff);
+	}
+
+	/**
+	 * Decodes the remaining UTF-7 (RFC 2152) encoded bytes of the given
+	 * buffer into the given array, without allocating anything. If the
+	 * decoded text fits, the position of the buffer is advanced to its limit.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param c	Where to store the decoded text
+	 * @param cOff	The index of <code>c</code> to store the first char at
+	 * @return the number of chars written or, if the decoded text does not
+	 * 	fit, minus the number of chars missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws MalformedInputException if the bytes are not valid UTF-7
+	 * @throws IndexOutOfBoundsException if <code>cOff</code> is not within 
+	 * 	<code>c</code>
+	 */
+	public static int decode(ByteBuffer bb, char[] c, int cOff)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7.codec.decodeInto(bb, c, cOff);
+	}
+
+	/**
+	 * Decodes the given UTF-7 (RFC 2152) encoded bytes and appends the
+	 * text to the given StringBuilder, without creating a String first.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param sb	The StringBuilder to append the decoded text to
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid UTF-7. Then
+	 * 	the length of <code>sb</code> is reset to what it was before, so
+	 * 	nothing is appended.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decode(byte[] b, int off, int len, 
+		StringBuilder sb)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7.codec.appendTo(b, off, len, sb);
+	}
+
+	/**
+	 * Decodes the given UTF-7 (RFC 2152) encoded bytes and appends the
+	 * text to the given Appendable, a chunk at a time.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param a	Where to append the decoded text
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid UTF-7. 
+	 * 	The text decoded before has been appended then.
+	 * @throws IOException if <code>a</code> throws one
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decode(byte[] b, int off, int len, Appendable a)
+		throws IOException
+	{
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.UTF_7.codec.decode(b, off, off + len, a);
+	}
+
+	/**
+	 * Decodes the remaining UTF-7 (RFC 2152) encoded bytes of the given buffer
+	 * and appends the text to the given StringBuilder. The position of the
+	 * buffer is advanced to its limit then.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param sb	The StringBuilder to append the decoded text to
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid UTF-7. Then
+	 * 	the length of <code>sb</code> is reset to what it was before, so
+	 * 	nothing is appended, and the position of the buffer is not changed.
+	 */
+	public static int decode(ByteBuffer bb, StringBuilder sb)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7.codec.appendTo(bb, sb);
+	}
+
+	/**
+	 * Decodes the remaining UTF-7 (RFC 2152) encoded bytes of the given buffer
+	 * and appends the text to the given Appendable, a chunk at a time. The
+	 * position of the buffer is advanced to its limit then.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param a	Where to append the decoded text
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid UTF-7. 
+	 * 	The text decoded before has been appended then, but the position of
+	 * 	the buffer is not changed.
+	 * @throws IOException if <code>a</code> throws one
+	 */
+	public static int decode(ByteBuffer bb, Appendable a) throws IOException {
+		return UTF7Charsets.UTF_7.codec.decode(bb, a);
+	}
+
+	/**
+	 * Get the number of chars {@link #decode(byte[], int, int)} would
+	 * return for the given bytes, without decoding them.
+	 * 
+	 * @param b	The bytes to measure
+	 * @param off	The index of the first byte to measure
+	 * @param len	The number of bytes to measure
+	 * @return the length of the decoded text, or -1 if the bytes are not
+	 * 	valid UTF-7.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodedLength(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.UTF_7.codec.decodedLength(b, off, off + len);
+	}
+
+	/**
+	 * Get the number of chars the remaining bytes of the given buffer decode
+	 * to, without decoding them. The position of the buffer is not changed.
+	 * 
+	 * @param bb	The bytes to measure
+	 * @return the length of the decoded text, or -1 if the bytes are not
+	 * 	valid UTF-7.
+	 */
+	public static int decodedLength(ByteBuffer bb) {
+		return UTF7Charsets.UTF_7.codec.decodedLength(bb, bb.position(), 
+			bb.limit());
+	}
+
+	/**
+	 * Tells whether the given bytes are valid UTF-7, i.e. whether they 
+	 * decode without error. This is much cheaper than decoding, since 
+	 * nothing gets allocated or thrown.
+	 * 
+	 * @param b	The bytes to check
+	 * @param off	The index of the first byte to check
+	 * @param len	The number of bytes to check
+	 * @return {@code true} if the bytes are valid UTF-7.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static boolean isValid(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.UTF_7.codec.isValid(b, off, off + len);
+	}
+
+	/**
+	 * Tells whether the remaining bytes of the given buffer are valid 
+	 * UTF-7. The position of the buffer is not changed.
+	 * 
+	 * @param bb	The bytes to check
+	 * @return {@code true} if the bytes are valid UTF-7.
+	 */
+	public static boolean isValid(ByteBuffer bb) {
+		return UTF7Charsets.UTF_7.codec.isValid(bb, bb.position(), 
+			bb.limit());
+	}
+
+	/**
+	 * Get the number of code points the given UTF-7 encoded bytes 
+	 * decode to, without decoding them.
+	 * 
+	 * @param b	The bytes to measure
+	 * @param off	The index of the first byte to measure
+	 * @param len	The number of bytes to measure
+	 * @return the number of code points of the decoded text, or -1 if the 
+	 * 	bytes are not valid UTF-7.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodedCodePointCount(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.UTF_7.codec.codePointCount(b, off, off + len);
+	}
+
+	/**
+	 * Encodes the given text using UTF-7 (RFC 2152), encoding the optional
+	 * direct characters directly.
+	 * 
+	 * @param s	The text to encode
+	 * @return the encoded text.
+	 */
+	public static byte[] encodeOptional(String s) {
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.encode(s);
+	}
+
+	/**
+	 * Encodes the given text using X-UTF-7-OPTIONAL into a String,
+	 * without creating a byte array. The result holds a char per encoded 
+	 * byte, which is where a protocol built from Strings needs it.
+	 * 
+	 * @param s	The text to encode
+	 * @return the encoded text, <code>s</code> itself if it is a String 
+	 * 	that encodes to itself.
+	 */
+	public static String encodeOptionalToString(CharSequence s) {
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.encodeToString(s);
+	}
+
+	/**
+	 * Get the exact number of bytes {@link #encodeOptional(String)} would
+	 * produce for the given text, without encoding it.
+	 * 
+	 * @param s	The text to measure
+	 * @return the length of the X-UTF-7-OPTIONAL encoded text.
+	 */
+	public static int encodedLengthOptional(CharSequence s) {
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.encodedLength(s, 0, s.length());
+	}
+
+	/**
+	 * Encodes the given text using X-UTF-7-OPTIONAL
+	 * into the given array, without allocating anything. Meant for output
+	 * buffers that get reused.
+	 * 
+	 * @param s	The text to encode
+	 * @param b	Where to store the encoded text
+	 * @param off	The index of <code>b</code> to store the first byte at
+	 * @return the number of bytes written or, if the encoded text does not
+	 * 	fit, minus the number of bytes missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws IndexOutOfBoundsException if <code>off</code> is negative or
+	 * 	greater than the length of <code>b</code>
+	 */
+	public static int encodeOptional(CharSequence s, byte[] b, int off) {
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.encodeInto(s, b, off);
+	}
+
+	/**
+	 * Encodes the given text using X-UTF-7-OPTIONAL
+	 * into the given buffer, without allocating anything. The encoded text
+	 * is stored starting at the position of the buffer, which is advanced by
+	 * the number of bytes written.
+	 * 
+	 * @param s	The text to encode
+	 * @param bb	Where to store the encoded text
+	 * @return the number of bytes written or, if the encoded text does not
+	 * 	fit, minus the number of bytes missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws java.nio.ReadOnlyBufferException if <code>bb</code> is read 
+	 * 	only, even if the text is empty or does not fit
+	 */
+	public static int encodeOptional(CharSequence s, ByteBuffer bb) {
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.encodeInto(s, bb);
+	}
+
+	/**
+	 * Decodes the given X-UTF-7-OPTIONAL encoded bytes.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @return the decoded text.
+	 * @throws MalformedInputException if the bytes are not valid UTF-7
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static String decodeOptional(byte[] b, int off, int len)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.decode(b, off, len);
+	}
+
+	/**
+	 * Decodes the given X-UTF-7-OPTIONAL encoded text, a char per
+	 * encoded byte, without creating a byte array.
+	 * 
+	 * @param s	The text to decode
+	 * @return the decoded text, <code>s</code> itself if it is a String 
+	 * 	without any shift character.
+	 * @throws MalformedInputException if the text is not valid X-UTF-7-OPTIONAL
+	 */
+	public static String decodeOptional(CharSequence s)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.decode(s);
+	}
+
+	/**
+	 * Decodes the given X-UTF-7-OPTIONAL encoded bytes into the given
+	 * array, without allocating anything.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param c	Where to store the decoded text
+	 * @param cOff	The index of <code>c</code> to store the first char at
+	 * @return the number of chars written or, if the decoded text does not
+	 * 	fit, minus the number of chars missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws MalformedInputException if the bytes are not valid X-UTF-7-OPTIONAL
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>, or if
+	 * 	<code>cOff</code> is not within <code>c</code>
+	 */
+	public static int decodeOptional(byte[] b, int off, int len, char[] c, 
+		int cOff) throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.decodeInto(b, off, len, c, cOff);
+	}
+
+	/**
+	 * Decodes the remaining X-UTF-7-OPTIONAL encoded bytes of the given
+	 * buffer into the given array, without allocating anything. If the
+	 * decoded text fits, the position of the buffer is advanced to its limit.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param c	Where to store the decoded text
+	 * @param cOff	The index of <code>c</code> to store the first char at
+	 * @return the number of chars written or, if the decoded text does not
+	 * 	fit, minus the number of chars missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws MalformedInputException if the bytes are not valid X-UTF-7-OPTIONAL
+	 * @throws IndexOutOfBoundsException if <code>cOff</code> is not within 
+	 * 	<code>c</code>
+	 */
+	public static int decodeOptional(ByteBuffer bb, char[] c, int cOff)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.decodeInto(bb, c, cOff);
+	}
+
+	/**
+	 * Decodes the given X-UTF-7-OPTIONAL encoded bytes and appends the
+	 * text to the given StringBuilder, without creating a String first.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param sb	The StringBuilder to append the decoded text to
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid 
+	 * 	X-UTF-7-OPTIONAL. Then the length of <code>sb</code> is reset to 
+	 * 	what it was before, so nothing is appended.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodeOptional(byte[] b, int off, int len, 
+		StringBuilder sb)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.appendTo(b, off, len, sb);
+	}
+
+	/**
+	 * Decodes the given X-UTF-7-OPTIONAL encoded bytes and appends the
+	 * text to the given Appendable, a chunk at a time.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param a	Where to append the decoded text
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid 
+	 * 	X-UTF-7-OPTIONAL. The text decoded before has been appended then.
+	 * @throws IOException if <code>a</code> throws one
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodeOptional(byte[] b, int off, int len, Appendable a)
+		throws IOException
+	{
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.decode(b, off, off + len, a);
+	}
+
+	/**
+	 * Decodes the remaining X-UTF-7-OPTIONAL encoded bytes of the given buffer
+	 * and appends the text to the given StringBuilder. The position of the
+	 * buffer is advanced to its limit then.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param sb	The StringBuilder to append the decoded text to
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid 
+	 * 	X-UTF-7-OPTIONAL. Then the length of <code>sb</code> is reset to 
+	 * 	what it was before, so nothing is appended, and the position of the
+	 * 	buffer is not changed.
+	 */
+	public static int decodeOptional(ByteBuffer bb, StringBuilder sb)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.appendTo(bb, sb);
+	}
+
+	/**
+	 * Decodes the remaining X-UTF-7-OPTIONAL encoded bytes of the given buffer
+	 * and appends the text to the given Appendable, a chunk at a time. The
+	 * position of the buffer is advanced to its limit then.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param a	Where to append the decoded text
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid 
+	 * 	X-UTF-7-OPTIONAL. The text decoded before has been appended then,
+	 * 	but the position of the buffer is not changed.
+	 * @throws IOException if <code>a</code> throws one
+	 */
+	public static int decodeOptional(ByteBuffer bb, Appendable a)
+		throws IOException
+	{
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.decode(bb, a);
+	}
+
+	/**
+	 * Get the number of chars {@link #decodeOptional(byte[], int, int)} would
+	 * return for the given bytes, without decoding them.
+	 * 
+	 * @param b	The bytes to measure
+	 * @param off	The index of the first byte to measure
+	 * @param len	The number of bytes to measure
+	 * @return the length of the decoded text, or -1 if the bytes are not
+	 * 	valid X-UTF-7-OPTIONAL.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodedLengthOptional(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.decodedLength(b, off, off + len);
+	}
+
+	/**
+	 * Get the number of chars the remaining bytes of the given buffer decode
+	 * to, without decoding them. The position of the buffer is not changed.
+	 * 
+	 * @param bb	The bytes to measure
+	 * @return the length of the decoded text, or -1 if the bytes are not
+	 * 	valid X-UTF-7-OPTIONAL.
+	 */
+	public static int decodedLengthOptional(ByteBuffer bb) {
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.decodedLength(bb, bb.position(), 
+			bb.limit());
+	}
+
+	/**
+	 * Tells whether the given bytes are valid X-UTF-7-OPTIONAL, i.e. whether 
+	 * they decode without error. This is much cheaper than decoding, since 
+	 * nothing gets allocated or thrown.
+	 * 
+	 * @param b	The bytes to check
+	 * @param off	The index of the first byte to check
+	 * @param len	The number of bytes to check
+	 * @return {@code true} if the bytes are valid X-UTF-7-OPTIONAL.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static boolean isValidOptional(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.isValid(b, off, off + len);
+	}
+
+	/**
+	 * Tells whether the remaining bytes of the given buffer are valid 
+	 * X-UTF-7-OPTIONAL. The position of the buffer is not changed.
+	 * 
+	 * @param bb	The bytes to check
+	 * @return {@code true} if the bytes are valid X-UTF-7-OPTIONAL.
+	 */
+	public static boolean isValidOptional(ByteBuffer bb) {
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.isValid(bb, bb.position(), 
+			bb.limit());
+	}
+
+	/**
+	 * Get the number of code points the given X-UTF-7-OPTIONAL encoded bytes 
+	 * decode to, without decoding them.
+	 * 
+	 * @param b	The bytes to measure
+	 * @param off	The index of the first byte to measure
+	 * @param len	The number of bytes to measure
+	 * @return the number of code points of the decoded text, or -1 if the 
+	 * 	bytes are not valid X-UTF-7-OPTIONAL.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodedCodePointCountOptional(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.UTF_7_OPTIONAL.codec.codePointCount(b, off, off + len);
+	}
+
+	/**
+	 * Encodes the given text using modified UTF-7 (RFC 3501).
+	 * 
+	 * @param s	The text to encode, e.g. an IMAP mailbox name
+	 * @return the encoded text.
+	 */
+	public static byte[] encodeModified(String s) {
+		return UTF7Charsets.IMAP_UTF_7.codec.encode(s);
+	}
+
+	/**
+	 * Encodes the given text using modified UTF-7 (RFC 3501) into a String,
+	 * without creating a byte array. The result holds a char per encoded 
+	 * byte, which is where a protocol built from Strings needs it.
+	 * 
+	 * @param s	The text to encode
+	 * @return the encoded text, <code>s</code> itself if it is a String 
+	 * 	that encodes to itself.
+	 */
+	public static String encodeModifiedToString(CharSequence s) {
+		return UTF7Charsets.IMAP_UTF_7.codec.encodeToString(s);
+	}
+
+	/**
+	 * Get the exact number of bytes {@link #encodeModified(String)} would
+	 * produce for the given text, without encoding it. Useful to
+	 * announce an IMAP literal (<code>{n}</code>) before writing it.
+	 * 
+	 * @param s	The text to measure
+	 * @return the length of the modified UTF-7 encoded text.
+	 */
+	public static int encodedLengthModified(CharSequence s) {
+		return UTF7Charsets.IMAP_UTF_7.codec.encodedLength(s, 0, s.length());
+	}
+
+	/**
+	 * Encodes the given text using modified UTF-7 (RFC 3501)
+	 * into the given array, without allocating anything. Meant for output
+	 * buffers that get reused.
+	 * 
+	 * @param s	The text to encode
+	 * @param b	Where to store the encoded text
+	 * @param off	The index of <code>b</code> to store the first byte at
+	 * @return the number of bytes written or, if the encoded text does not
+	 * 	fit, minus the number of bytes missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws IndexOutOfBoundsException if <code>off</code> is negative or
+	 * 	greater than the length of <code>b</code>
+	 */
+	public static int encodeModified(CharSequence s, byte[] b, int off) {
+		return UTF7Charsets.IMAP_UTF_7.codec.encodeInto(s, b, off);
+	}
+
+	/**
+	 * Encodes the given text using modified UTF-7 (RFC 3501)
+	 * into the given buffer, without allocating anything. The encoded text
+	 * is stored starting at the position of the buffer, which is advanced by
+	 * the number of bytes written.
+	 * 
+	 * @param s	The text to encode
+	 * @param bb	Where to store the encoded text
+	 * @return the number of bytes written or, if the encoded text does not
+	 * 	fit, minus the number of bytes missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws java.nio.ReadOnlyBufferException if <code>bb</code> is read 
+	 * 	only, even if the text is empty or does not fit
+	 */
+	public static int encodeModified(CharSequence s, ByteBuffer bb) {
+		return UTF7Charsets.IMAP_UTF_7.codec.encodeInto(s, bb);
+	}
+
+	/**
+	 * Decodes the given modified UTF-7 (RFC 3501) encoded bytes.
+	 * 
+	 * @param b	The bytes to decode, e.g. an IMAP mailbox name
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @return the decoded text.
+	 * @throws MalformedInputException if the bytes are not valid modified
+	 * 	UTF-7
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static String decodeModified(byte[] b, int off, int len)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.IMAP_UTF_7.codec.decode(b, off, len);
+	}
+
+	/**
+	 * Decodes the given modified UTF-7 (RFC 3501) encoded text, a char per
+	 * encoded byte, without creating a byte array.
+	 * 
+	 * @param s	The text to decode
+	 * @return the decoded text, <code>s</code> itself if it is a String 
+	 * 	without any shift character.
+	 * @throws MalformedInputException if the text is not valid modified
+	 * 	UTF-7
+	 */
+	public static String decodeModified(CharSequence s)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.IMAP_UTF_7.codec.decode(s);
+	}
+
+	/**
+	 * Decodes the given modified UTF-7 (RFC 3501) encoded bytes into the given
+	 * array, without allocating anything.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param c	Where to store the decoded text
+	 * @param cOff	The index of <code>c</code> to store the first char at
+	 * @return the number of chars written or, if the decoded text does not
+	 * 	fit, minus the number of chars missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws MalformedInputException if the bytes are not valid modified
+	 * 	UTF-7
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>, or if
+	 * 	<code>cOff</code> is not within <code>c</code>
+	 */
+	public static int decodeModified(byte[] b, int off, int len, char[] c, 
+		int cOff) throws MalformedInputException
+	{
+		return UTF7Charsets.IMAP_UTF_7.codec.decodeInto(b, off, len, c, cOff);
+	}
+
+	/**
+	 * Decodes the remaining modified UTF-7 (RFC 3501) encoded bytes of the given
+	 * buffer into the given array, without allocating anything. If the
+	 * decoded text fits, the position of the buffer is advanced to its limit.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param c	Where to store the decoded text
+	 * @param cOff	The index of <code>c</code> to store the first char at
+	 * @return the number of chars written or, if the decoded text does not
+	 * 	fit, minus the number of chars missing. In the latter case nothing 
+	 * 	is written.
+	 * @throws MalformedInputException if the bytes are not valid modified
+	 * 	UTF-7
+	 * @throws IndexOutOfBoundsException if <code>cOff</code> is not within 
+	 * 	<code>c</code>
+	 */
+	public static int decodeModified(ByteBuffer bb, char[] c, int cOff)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.IMAP_UTF_7.codec.decodeInto(bb, c, cOff);
+	}
+
+	/**
+	 * Decodes the given modified UTF-7 (RFC 3501) encoded bytes and appends the
+	 * text to the given StringBuilder, without creating a String first.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param sb	The StringBuilder to append the decoded text to
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid modified
+	 * 	UTF-7. Then the length of <code>sb</code> is reset to what it was 
+	 * 	before, so nothing is appended.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodeModified(byte[] b, int off, int len, 
+		StringBuilder sb)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.IMAP_UTF_7.codec.appendTo(b, off, len, sb);
+	}
+
+	/**
+	 * Decodes the given modified UTF-7 (RFC 3501) encoded bytes and appends the
+	 * text to the given Appendable, a chunk at a time.
+	 * 
+	 * @param b	The bytes to decode
+	 * @param off	The index of the first byte to decode
+	 * @param len	The number of bytes to decode
+	 * @param a	Where to append the decoded text
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid modified
+	 * 	UTF-7. The text decoded before has been appended then.
+	 * @throws IOException if <code>a</code> throws one
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodeModified(byte[] b, int off, int len, Appendable a)
+		throws IOException
+	{
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.IMAP_UTF_7.codec.decode(b, off, off + len, a);
+	}
+
+	/**
+	 * Decodes the remaining modified UTF-7 (RFC 3501) encoded bytes of the
+	 * given buffer and appends the text to the given StringBuilder. The
+	 * position of the buffer is advanced to its limit then.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param sb	The StringBuilder to append the decoded text to
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid modified
+	 * 	UTF-7. Then the length of <code>sb</code> is reset to what it was 
+	 * 	before, so nothing is appended, and the position of the buffer is 
+	 * 	not changed.
+	 */
+	public static int decodeModified(ByteBuffer bb, StringBuilder sb)
+		throws MalformedInputException
+	{
+		return UTF7Charsets.IMAP_UTF_7.codec.appendTo(bb, sb);
+	}
+
+	/**
+	 * Decodes the remaining modified UTF-7 (RFC 3501) encoded bytes of the
+	 * given buffer and appends the text to the given Appendable, a chunk at a
+	 * time. The position of the buffer is advanced to its limit then.
+	 * 
+	 * @param bb	The bytes to decode
+	 * @param a	Where to append the decoded text
+	 * @return the number of chars appended.
+	 * @throws MalformedInputException if the bytes are not valid modified
+	 * 	UTF-7. The text decoded before has been appended then, but the 
+	 * 	position of the buffer is not changed.
+	 * @throws IOException if <code>a</code> throws one
+	 */
+	public static int decodeModified(ByteBuffer bb, Appendable a)
+		throws IOException
+	{
+		return UTF7Charsets.IMAP_UTF_7.codec.decode(bb, a);
+	}
+
+	/**
+	 * Get the number of chars {@link #decodeModified(byte[], int, int)} would
+	 * return for the given bytes, without decoding them.
+	 * 
+	 * @param b	The bytes to measure
+	 * @param off	The index of the first byte to measure
+	 * @param len	The number of bytes to measure
+	 * @return the length of the decoded text, or -1 if the bytes are not
+	 * 	valid modified UTF-7.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodedLengthModified(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.IMAP_UTF_7.codec.decodedLength(b, off, off + len);
+	}
+
+	/**
+	 * Get the number of chars the remaining bytes of the given buffer decode
+	 * to, without decoding them. The position of the buffer is not changed.
+	 * 
+	 * @param bb	The bytes to measure
+	 * @return the length of the decoded text, or -1 if the bytes are not
+	 * 	valid modified UTF-7.
+	 */
+	public static int decodedLengthModified(ByteBuffer bb) {
+		return UTF7Charsets.IMAP_UTF_7.codec.decodedLength(bb, bb.position(), 
+			bb.limit());
+	}
+
+	/**
+	 * Tells whether the given bytes are valid modified UTF-7, i.e. whether they 
+	 * decode without error. This is much cheaper than decoding, since 
+	 * nothing gets allocated or thrown.
+	 * 
+	 * @param b	The bytes to check
+	 * @param off	The index of the first byte to check
+	 * @param len	The number of bytes to check
+	 * @return {@code true} if the bytes are valid modified UTF-7.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static boolean isValidModified(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.IMAP_UTF_7.codec.isValid(b, off, off + len);
+	}
+
+	/**
+	 * Tells whether the remaining bytes of the given buffer are valid 
+	 * modified UTF-7. The position of the buffer is not changed.
+	 * 
+	 * @param bb	The bytes to check
+	 * @return {@code true} if the bytes are valid modified UTF-7.
+	 */
+	public static boolean isValidModified(ByteBuffer bb) {
+		return UTF7Charsets.IMAP_UTF_7.codec.isValid(bb, bb.position(), 
+			bb.limit());
+	}
+
+	/**
+	 * Get the number of code points the given modified UTF-7 encoded bytes 
+	 * decode to, without decoding them.
+	 * 
+	 * @param b	The bytes to measure
+	 * @param off	The index of the first byte to measure
+	 * @param len	The number of bytes to measure
+	 * @return the number of code points of the decoded text, or -1 if the 
+	 * 	bytes are not valid modified UTF-7.
+	 * @throws IndexOutOfBoundsException if <code>off</code> and 
+	 * 	<code>len</code> do not denote a range of <code>b</code>
+	 */
+	public static int decodedCodePointCountModified(byte[] b, int off, int len) {
+		UTF7StyleCodec.checkRange(b, off, len);
+		return UTF7Charsets.IMAP_UTF_7.codec.codePointCount(b, off, off + len);
+	}
+}
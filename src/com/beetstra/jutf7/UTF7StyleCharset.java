@@ -26,6 +26,7 @@ package com.beetstra.jutf7;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.Arrays;
 import java.util.List;
 
@@ -34,13 +35,49 @@ import java.util.List;
  * 
  * @author Jaap Beetstra
  */
-abstract class UTF7StyleCharset
+public abstract class UTF7StyleCharset
 	extends Charset
 {
 	private static final List<String> CONTAINED = Arrays.asList("US-ASCII",
 		"ISO-8859-1", "UTF-8", "UTF-16", "UTF-16LE", "UTF-16BE");
+	/** {@link #byteClass} of the unshift character */
+	static final byte UNSHIFT = 64;
+	/** {@link #byteClass} of bytes neither in the alphabet nor unshift */
+	static final byte OTHER = 65;
 	final boolean strict;
 	Base64Util base64;
+	// the characters which can be encoded directly
+	private final boolean[] isDirect = new boolean[128];
+	/*
+	 * If the characters which can be encoded directly are a range except a
+	 * single char at most, like for modified UTF-7, 4 chars are tested with
+	 * a SWAR range test rather than 4 table lookups. Otherwise directMin is
+	 * 0.
+	 */
+	private final char directMin;
+	private final char directMax;
+	private final char directExcept;
+	/**
+	 * The class of each byte (indexed by <code>b &amp; 0xFF</code>) in <i>base
+	 * 64 mode</i>: its sextet, {@link #UNSHIFT} or {@link #OTHER}.
+	 */
+	final byte[] byteClass = new byte[256];
+	/** encodes and decodes whole sequences without a coder instance */
+	final UTF7StyleCodec codec;
+	private final CoderPool<CharsetEncoder> encoders = 
+		new CoderPool<CharsetEncoder>() {
+			@Override
+			CharsetEncoder create() {
+				return newEncoder();
+			}
+		};
+	private final CoderPool<CharsetDecoder> decoders = 
+		new CoderPool<CharsetDecoder>() {
+			@Override
+			CharsetDecoder create() {
+				return newDecoder();
+			}
+		};
 
 	/**
 	 * Besides the name and aliases, two additional parameters are required.
@@ -49,19 +86,52 @@ abstract class UTF7StyleCharset
 	 * decoders should be strict about the interpretation of malformed encoded
 	 * sequences. This is used since modified UTF-7 specifically disallows some
 	 * constructs which are allowed (or not specifically disallowed) in UTF-7
-	 * (RFC 2152).
+	 * (RFC 2152). Finally, the set of characters which are encoded directly
+	 * is required. Keeping it as data rather than code lets all variants share
+	 * the same monomorphic encoder loop.
 	 * 
 	 * @param canonicalName	The name as defined in java.nio.charset.Charset
 	 * @param aliases	The aliases as defined in java.nio.charset.Charset
 	 * @param alphabet	The base 64 alphabet used
 	 * @param strict	True if strict handling of sequences is requested
+	 * @param direct	The 7-bit ASCII characters which can be encoded directly
 	 */
 	protected UTF7StyleCharset(String canonicalName, String[] aliases,
-		String alphabet, boolean strict)
+		String alphabet, boolean strict, String direct)
 	{
 		super(canonicalName, aliases);
 		this.base64 = new Base64Util(alphabet);
 		this.strict = strict;
+		for (int i = 0; i < direct.length(); i++ ) {
+			isDirect[direct.charAt(i)] = true;
+		}
+		char min = 0;
+		while (min < isDirect.length && !isDirect[min]) {
+			min++;
+		}
+		char max = (char) (isDirect.length - 1);
+		while (max > min && !isDirect[max]) {
+			max--;
+		}
+		// 0 is no char in range, so it never gets excluded
+		char except = 0;
+		int gaps = 0;
+		for (char ch = min; ch <= max; ch++ ) {
+			if ( !isDirect[ch]) {
+				except = ch;
+				gaps++;
+			}
+		}
+		final boolean isRange = min > 0 && max < 0x7F && gaps <= 1;
+		this.directMin = isRange ? min : 0;
+		this.directMax = max;
+		this.directExcept = except;
+		for (int i = 0; i < byteClass.length; i++ ) {
+			final int sextet = base64.getSextet((byte) i);
+			byteClass[i] = sextet >= 0 ? (byte) sextet : OTHER;
+		}
+		byteClass[unshift() & 0xFF] = UNSHIFT;
+		codec = new UTF7StyleCodec(this);
 	}
 
 	@Override
@@ -79,6 +149,90 @@ abstract class UTF7StyleCharset
 		return new UTF7StyleCharsetEncoder(this, base64, strict);
 	}
 
+	/**
+	 * Creates an encoder, which produces the shortest output it can find,
+	 * instead of leaving base 64 encoding at each char to be encoded
+	 * directly. Short runs of such chars between chars to be base 64 encoded
+	 * are base 64 encoded as well, if that saves bytes, which RFC 2152 
+	 * allows. The decision is made by looking ahead within the input 
+	 * available to a single encode call.
+	 * 
+	 * @return a new size optimal encoder for this charset.
+	 * @throws UnsupportedOperationException if this charset requires direct
+	 * 	encoding of such chars, like modified UTF-7 (RFC 3501) does.
+	 */
+	public CharsetEncoder newSizeOptimalEncoder() {
+		return new UTF7StyleCharsetEncoder(this, base64, strict, true);
+	}
+
+	/**
+	 * Get an encoder for this charset from a pool shared by all threads, or
+	 * a new one if none is idle. The encoder is in the state of a new one.
+	 * Hand it back using {@link #releaseEncoder(CharsetEncoder)} when done.
+	 * 
+	 * @return an encoder for this charset.
+	 */
+	public final CharsetEncoder acquireEncoder() {
+		return encoders.take();
+	}
+
+	/**
+	 * Hands an encoder obtained by {@link #acquireEncoder()} back to the pool.
+	 * The encoder gets reset; if its error actions or replacement have been
+	 * changed, or if it has been created by {@link #newSizeOptimalEncoder()},
+	 * it is dropped instead. The caller must not use it afterwards.
+	 * 
+	 * @param encoder	The encoder to hand back
+	 * @throws IllegalArgumentException if <code>encoder</code> is not an
+	 * 	encoder for this charset
+	 */
+	public final void releaseEncoder(final CharsetEncoder encoder) {
+		if (encoder.charset() != this) {
+			throw new IllegalArgumentException("not an encoder for " + name());
+		}
+		if ( !((UTF7StyleCharsetEncoder) encoder).isSizeOptimal()
+			&& encoder.malformedInputAction() == CodingErrorAction.REPORT
+			&& encoder.unmappableCharacterAction() == CodingErrorAction.REPORT
+			&& Arrays.equals(encoder.replacement(), 
+				UTF7StyleCharsetEncoder.REPLACEMENT))
+		{
+			encoders.give(encoder.reset());
+		}
+	}
+
+	/**
+	 * Get a decoder for this charset from a pool shared by all threads, or
+	 * a new one if none is idle. The decoder is in the state of a new one.
+	 * Hand it back using {@link #releaseDecoder(CharsetDecoder)} when done.
+	 * 
+	 * @return a decoder for this charset.
+	 */
+	public final CharsetDecoder acquireDecoder() {
+		return decoders.take();
+	}
+
+	/**
+	 * Hands a decoder obtained by {@link #acquireDecoder()} back to the pool.
+	 * The decoder gets reset; if its error actions or replacement have been
+	 * changed, it is dropped instead. The caller must not use it afterwards.
+	 * 
+	 * @param decoder	The decoder to hand back
+	 * @throws IllegalArgumentException if <code>decoder</code> is not a
+	 * 	decoder for this charset
+	 */
+	public final void releaseDecoder(final CharsetDecoder decoder) {
+		if (decoder.charset() != this) {
+			throw new IllegalArgumentException("not a decoder for " + name());
+		}
+		if (decoder.malformedInputAction() == CodingErrorAction.REPORT
+			&& decoder.unmappableCharacterAction() == CodingErrorAction.REPORT
+			&& decoder.replacement().equals(
+				UTF7StyleCharsetDecoder.REPLACEMENT))
+		{
+			decoders.give(decoder.reset());
+		}
+	}
+
 	/**
 	 * Tells if a character can be encoded using simple (US-ASCII) encoding or
 	 * requires base 64 encoding.
@@ -86,7 +240,29 @@ abstract class UTF7StyleCharset
 	 * @param ch	The character to encode.
 	 * @return {@code true} if the character can be encoded directly.
 	 */
-	abstract boolean canEncodeDirectly(char ch);
+	final boolean canEncodeDirectly(char ch) {
+		return ch < 128 && isDirect[ch];
+	}
+
+	/**
+	 * Tells if 4 characters can all be encoded using simple (US-ASCII)
+	 * encoding.
+	 * 
+	 * @param chars	The characters to encode, packed by 
+	 * 	{@link SwarUtil#pack(CharSequence, int)}.
+	 * @return {@code true} if all 4 characters can be encoded directly.
+	 * @see #canEncodeDirectly(char)
+	 */
+	final boolean canEncodeDirectly(long chars) {
+		if (directMin != 0) {
+			return SwarUtil.isAscii(chars) 
+				&& SwarUtil.isInRange(chars, directMin, directMax, directExcept);
+		}
+		// the ASCII test of all lanes at once bounds the table lookups
+		return SwarUtil.isAscii(chars) && isDirect[(int) (chars >>> 48)]
+			&& isDirect[(int) (chars >>> 32) & 0x7F]
+			&& isDirect[(int) (chars >>> 16) & 0x7F] && isDirect[(int) chars & 0x7F];
+	}
 
 	/**
 	 * Get the character used to switch to base 64 encoding.
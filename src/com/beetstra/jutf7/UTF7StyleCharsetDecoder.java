@@ -23,161 +23,679 @@
  */
 package com.beetstra.jutf7;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
 
 /**
  * The CharsetDecoder used to decode both variants of the UTF-7 charset and the
  * modified-UTF-7 charset.
+ * <p>
+ * All decoding is done by a single loop, which {@link #decodeLoop} shares
+ * with {@link UTF7StyleCodec}. It reads the bytes from an array, if 
+ * accessible, or else from a buffer, or takes chars as the bytes from a 
+ * character sequence. It writes the chars to an array or a buffer. Without
+ * an output, the chars are counted only. When decoding some input as a 
+ * whole, the loop neither uses nor changes the state of the decoder, so the
+ * codec shares a single decoder between all threads for that.
+ * </p>
  * 
  * @author Jaap Beetstra
  */
-class UTF7StyleCharsetDecoder
+final class UTF7StyleCharsetDecoder
 	extends CharsetDecoder
 {
+	/** the replacement of a new decoder */
+	static final String REPLACEMENT = "\uFFFD";
+	// number of chars decoded at once for an Appendable or counting
+	private static final int CHUNK_CHARS = 1024;
 	private final Base64Util base64;
+	private final byte[] byteClass;
 	private final byte shift;
-	private final byte unshift;
+	private final long shiftPattern;
 	private final boolean strict;
+	// state of base 64 mode between calls, kept in locals while in the loop
 	private boolean base64mode;
 	private int bitsRead;
+	// the bits read, which do not yet form a complete char, right aligned
 	private int tempChar;
 	private boolean justShifted;
 	private boolean justUnshifted;
+	// created on first use, and kept for the next calls
+	private char[] chunk;
+	private CharBuffer chunkBuffer;
 
 	UTF7StyleCharsetDecoder(UTF7StyleCharset cs, Base64Util base64,
 		boolean strict)
 	{
 		super(cs, 0.6f, 1.0f);
 		this.base64 = base64;
+		this.byteClass = cs.byteClass;
 		this.strict = strict;
 		this.shift = cs.shift();
-		this.unshift = cs.unshift();
+		this.shiftPattern = SwarUtil.pattern(shift);
 	}
 
 	@Override
 	protected CoderResult decodeLoop(ByteBuffer in, CharBuffer out) {
-		while (in.hasRemaining()) {
-			byte b = in.get();
-			if (base64mode) {
-				if (b == unshift) {
-					if (base64bitsWaiting()) {
-						return malformed(in);
+		final int sp = in.position();
+		final int dp = out.position();
+		final int soff = in.hasArray() ? in.arrayOffset() : 0;
+		final int doff = out.hasArray() ? out.arrayOffset() : 0;
+		final long r = decode(in.hasArray() ? in.array() : in, soff + sp, 
+			soff + in.limit(), out.hasArray() ? out.array() : out, doff + dp,
+			doff + out.limit(), false);
+		in.position(readPos(r) - soff);
+		out.position(writePos(r) - doff);
+		if (r < 0) {
+			return CoderResult.malformedForLength(1);
+		}
+		return in.hasRemaining() ? CoderResult.OVERFLOW : CoderResult.UNDERFLOW;
+	}
+
+	@Override
+	protected CoderResult implFlush(CharBuffer out) {
+		return malformedAtEnd()
+			? CoderResult.malformedForLength(1)
+			: CoderResult.UNDERFLOW;
+	}
+
+	@Override
+	protected void implReset() {
+		setUnshifted();
+		justShifted = false;
+		justUnshifted = false;
+	}
+
+	/**
+	 * Decodes the given bytes completely, i.e. including the check 
+	 * {@link #implFlush} does, into the given array. The state of this 
+	 * decoder is neither used nor changed, so any number of threads may call
+	 * this at the same time. Since no byte decodes to more than one char, 
+	 * the caller needs to provide at most <code>sl - sp</code> chars of 
+	 * room.
+	 * 
+	 * @param src	The bytes to decode
+	 * @param sp	The index of the first byte to decode
+	 * @param sl	The index following the last byte to decode
+	 * @param dst	Where to store the decoded characters
+	 * @param dp	The index of <code>dst</code> to store the first char at
+	 * @return the index of <code>dst</code> following the last char written
+	 * @throws MalformedInputException if the bytes are not a valid encoding
+	 * 	in the charset of this decoder
+	 */
+	int decode(final byte[] src, final int sp, final int sl, 
+		final char[] dst, final int dp) throws MalformedInputException
+	{
+		return decodeAll(src, sp, sl, dst, dp);
+	}
+
+	/**
+	 * Decodes the given bytes like 
+	 * {@link #decode(byte[], int, int, char[], int)}, but from a buffer. The
+	 * position of <code>src</code> is not changed.
+	 * 
+	 * @param src	The bytes to decode
+	 * @param sp	The index of the first byte to decode
+	 * @param sl	The index following the last byte to decode
+	 * @param dst	Where to store the decoded characters
+	 * @param dp	The index of <code>dst</code> to store the first char at
+	 * @return the index of <code>dst</code> following the last char written
+	 * @throws MalformedInputException if the bytes are not a valid encoding
+	 * 	in the charset of this decoder
+	 */
+	int decode(final ByteBuffer src, final int sp, final int sl, 
+		final char[] dst, final int dp) throws MalformedInputException
+	{
+		if (src.hasArray()) {
+			final int off = src.arrayOffset();
+			return decodeAll(src.array(), off + sp, off + sl, dst, dp);
+		}
+		return decodeAll(src, sp, sl, dst, dp);
+	}
+
+	/**
+	 * Decodes the given characters like 
+	 * {@link #decode(byte[], int, int, char[], int)}, each of them taking 
+	 * the place of a byte. Other than a byte outside of 7-bit ASCII, such a
+	 * char decodes to itself.
+	 * 
+	 * @param src	The characters to decode
+	 * @param sp	The index of the first character to decode
+	 * @param sl	The index following the last character to decode
+	 * @param dst	Where to store the decoded characters
+	 * @param dp	The index of <code>dst</code> to store the first char at
+	 * @return the index of <code>dst</code> following the last char written
+	 * @throws MalformedInputException if the characters are not a valid 
+	 * 	encoding in the charset of this decoder
+	 */
+	int decode(final CharSequence src, final int sp, final int sl, 
+		final char[] dst, final int dp) throws MalformedInputException
+	{
+		return decodeAll(src, sp, sl, dst, dp);
+	}
+
+	/**
+	 * Decodes the given bytes and appends the chars to the given Appendable,
+	 * a chunk at a time. A StringBuilder gets the chars appended from the 
+	 * chunk array directly, after its capacity got ensured once. The decoder
+	 * must be in its initial state, and is left in it.
+	 * 
+	 * @param src	The bytes to decode
+	 * @param sp	The index of the first byte to decode
+	 * @param sl	The index following the last byte to decode
+	 * @param dst	Where to append the decoded characters
+	 * @return the number of chars appended
+	 * @throws MalformedInputException if the bytes are not a valid encoding
+	 * 	in the charset of this decoder. The chars decoded before have been
+	 * 	appended then.
+	 * @throws IOException if <code>dst</code> throws one
+	 */
+	int decode(final byte[] src, final int sp, final int sl, 
+		final Appendable dst) throws IOException
+	{
+		return append(src, sp, sl, dst);
+	}
+
+	/**
+	 * Decodes the given bytes like 
+	 * {@link #decode(byte[], int, int, Appendable)}, but from a buffer. The
+	 * position of <code>src</code> is not changed.
+	 * 
+	 * @param src	The bytes to decode
+	 * @param sp	The index of the first byte to decode
+	 * @param sl	The index following the last byte to decode
+	 * @param dst	Where to append the decoded characters
+	 * @return the number of chars appended
+	 * @throws MalformedInputException if the bytes are not a valid encoding
+	 * 	in the charset of this decoder. The chars decoded before have been
+	 * 	appended then.
+	 * @throws IOException if <code>dst</code> throws one
+	 */
+	int decode(final ByteBuffer src, final int sp, final int sl, 
+		final Appendable dst) throws IOException
+	{
+		if (src.hasArray()) {
+			final int off = src.arrayOffset();
+			return append(src.array(), off + sp, off + sl, dst);
+		}
+		return append(src, sp, sl, dst);
+	}
+
+	/**
+	 * Runs the loop over all of the given input a chunk at a time, and 
+	 * appends each chunk to the given Appendable.
+	 * 
+	 * @param src	The input as taken by the loop
+	 * @param sp	The index of the first byte to decode
+	 * @param sl	The index following the last byte to decode
+	 * @param dst	Where to append the decoded characters
+	 * @return the number of chars appended
+	 * @throws MalformedInputException if the input is malformed
+	 * @throws IOException if <code>dst</code> throws one
+	 */
+	private int append(final Object src, int sp, final int sl, 
+		final Appendable dst) throws IOException
+	{
+		final char[] chunk = chunk();
+		final StringBuilder sb = dst instanceof StringBuilder
+			? (StringBuilder) dst
+			: null;
+		if (sb != null) {
+			// no byte decodes to more than one char
+			sb.ensureCapacity(sb.length() + sl - sp);
+		}
+		int n = 0;
+		try {
+			long r;
+			do {
+				r = decode(src, sp, sl, chunk, 0, chunk.length, false);
+				int k = writePos(r);
+				if (r < 0 && !base64mode) {
+					// an invalid byte ending base 64 mode got written already
+					k--;
+				}
+				if (sb != null) {
+					sb.append(chunk, 0, k);
+				} else {
+					dst.append(chunkBuffer, 0, k);
+				}
+				n += k;
+				if (r < 0) {
+					throw new MalformedInputException(1);
+				}
+				sp = readPos(r);
+			} while (sp < sl);
+			if (malformedAtEnd()) {
+				throw new MalformedInputException(1);
+			}
+			return n;
+		} finally {
+			implReset();
+		}
+	}
+
+	/**
+	 * Get the number of code points the given bytes decode to. The bytes get
+	 * decoded a chunk at a time, to count the code points of each chunk.
+	 * 
+	 * @param src	The bytes to count
+	 * @param sp	The index of the first byte to count
+	 * @param sl	The index following the last byte to count
+	 * @return the number of code points, or -1 if the bytes are not a valid
+	 * 	encoding in the charset of this decoder.
+	 */
+	int codePointCount(final byte[] src, int sp, final int sl) {
+		final char[] chunk = chunk();
+		int n = 0;
+		// the last char of the previous chunk
+		char last = 0;
+		try {
+			do {
+				final long r = decode(src, sp, sl, chunk, 0, chunk.length, 
+					false);
+				if (r < 0) {
+					return -1;
+				}
+				final int k = writePos(r);
+				if (k != 0) {
+					n += Character.codePointCount(chunk, 0, k);
+					// a surrogate pair split by the chunks is a single one
+					if (Character.isHighSurrogate(last) 
+						&& Character.isLowSurrogate(chunk[0]))
+					{
+						n--;
+					}
+					last = chunk[k - 1];
+				}
+				sp = readPos(r);
+			} while (sp < sl);
+			return malformedAtEnd() ? -1 : n;
+		} finally {
+			implReset();
+		}
+	}
+
+	/**
+	 * Runs the loop over all of the given input with unlimited room, 
+	 * starting in the initial state and checking the state at the end.
+	 * 
+	 * @param src	The input as taken by the loop
+	 * @param sp	The index of the first byte to decode
+	 * @param sl	The index following the last byte to decode
+	 * @param dst	Where to store the decoded characters
+	 * @param dp	The index of <code>dst</code> to store the first char at
+	 * @return the index of <code>dst</code> following the last char written
+	 * @throws MalformedInputException if the input is malformed
+	 */
+	private int decodeAll(final Object src, final int sp, final int sl, 
+		final char[] dst, final int dp) throws MalformedInputException
+	{
+		final long r = decode(src, sp, sl, dst, dp, Integer.MAX_VALUE, true);
+		if (r < 0) {
+			throw new MalformedInputException(1);
+		}
+		return writePos(r);
+	}
+
+	/**
+	 * @return the chunk to decode into, backed by {@link #chunkBuffer}.
+	 */
+	private char[] chunk() {
+		if (chunk == null) {
+			chunk = new char[CHUNK_CHARS];
+			chunkBuffer = CharBuffer.wrap(chunk);
+		}
+		return chunk;
+	}
+
+	/**
+	 * @param r	A result of the loop
+	 * @return the index following the last byte read.
+	 */
+	private static int readPos(final long r) {
+		return (int) (r >>> 32) & Integer.MAX_VALUE;
+	}
+
+	/**
+	 * @param r	A result of the loop
+	 * @return the index following the last char written.
+	 */
+	private static int writePos(final long r) {
+		return (int) r;
+	}
+
+	/**
+	 * The decode loop. The state of <i>base 64 mode</i> is kept in local 
+	 * variables while in the loop. Unless decoding all of the input at once,
+	 * it is taken from and left in the fields of this decoder.
+	 * 
+	 * @param src	The bytes to decode: an array, a buffer without an 
+	 * 	accessible array, or a character sequence with a char taking the
+	 * 	place of each byte
+	 * @param sp	The index of the first byte to decode
+	 * @param sl	The index following the last byte available
+	 * @param dst	Where to store the chars: an array, a buffer without an
+	 * 	accessible array, or {@code null} to count them only
+	 * @param dp	The index to store the first char at
+	 * @param dl	The index following the last char available
+	 * @param whole	If {@code true}, the input is decoded starting in the 
+	 * 	initial state and checked like {@link #implFlush} does at its end,
+	 * 	without using or changing the state of this decoder.
+	 * @return the indexes reached as <code>(long) sp &lt;&lt; 32 | dp</code>,
+	 * 	negative if malformed. Else all bytes have been read, or the room
+	 * 	is used up. If malformed outside of <i>base 64 mode</i>, the byte at
+	 * 	fault has been written as a char already.
+	 */
+	private long decode(final Object src, int sp, final int sl, 
+		final Object dst, int dp, final int dl, final boolean whole)
+	{
+		final byte[] byteClass = this.byteClass;
+		// the common case of arrays is not dispatched per char
+		final byte[] in = src instanceof byte[] ? (byte[]) src : null;
+		final char[] out = dst instanceof char[] ? (char[]) dst : null;
+		boolean shifted = !whole && base64mode;
+		int read = whole ? 0 : bitsRead;
+		int temp = whole ? 0 : tempChar;
+		boolean afterShift = !whole && justShifted;
+		boolean afterUnshift = !whole && justUnshifted;
+		try {
+			while (sp < sl) {
+				if ( !shifted) {
+					// copy the run of direct chars, capacity checked only once
+					final int start = sp;
+					sp = copyDirect(src, sp, sp + Math.min(sl - sp, dl - dp), 
+						dst, dp);
+					dp += sp - start;
+					if (sp != start) {
+						afterUnshift = false;
+					}
+					if (sp == sl) {
+						break;
 					}
-					if (justShifted) {
-						if ( !out.hasRemaining()) {
-							return overflow(in);
+					if (charAt(src, sp) != shift) {
+						return (long) sp << 32 | dp;
+					}
+					sp++;
+					shifted = true;
+					if (afterUnshift && strict) {
+						sp--;
+						return Long.MIN_VALUE | (long) sp << 32 | dp;
+					}
+					afterShift = true;
+					continue;
+				}
+				if (read == 0 && sl - sp >= Base64Util.BLOCK_BYTES
+					&& dl - dp >= Base64Util.BLOCK_CHARS)
+				{
+					// inside a long segment, decode a whole block at once
+					final long bits = in != null 
+						? base64.decodeBlock(in, sp) 
+						: decodeBlock(src, sp);
+					if (bits >= 0) {
+						if (out != null) {
+							out[dp] = (char) (bits >>> 32);
+							out[dp + 1] = (char) (bits >>> 16);
+							out[dp + 2] = (char) bits;
+						} else {
+							putBlock(dst, bits, dp);
+						}
+						sp += Base64Util.BLOCK_BYTES;
+						dp += Base64Util.BLOCK_CHARS;
+						afterShift = false;
+						continue;
+					}
+				}
+				final char ch = in != null ? (char) in[sp] : charAt(src, sp);
+				final int c = ch < 128 ? byteClass[ch] : UTF7StyleCharset.OTHER;
+				if (c < UTF7StyleCharset.UNSHIFT) {
+					if (dp == dl) {
+						return (long) sp << 32 | dp;
+					}
+					temp = temp << 6 | c;
+					read += 6;
+					if (read >= 16) {
+						read -= 16;
+						final char decoded = (char) (temp >>> read);
+						if (out != null) {
+							out[dp++ ] = decoded;
+						} else {
+							put(dst, dp++, decoded);
 						}
-						out.put((char) shift);
+						temp &= (1 << read) - 1;
+					}
+				} else if (c == UTF7StyleCharset.UNSHIFT) {
+					if (temp != 0 || read >= 6) {
+						return Long.MIN_VALUE | (long) sp << 32 | dp;
+					}
+					if (afterShift) {
+						if (dp == dl) {
+								return (long) sp << 32 | dp;
+						}
+						put(dst, dp++, (char) shift);
 					} else {
-						justUnshifted = true;
+						afterUnshift = true;
 					}
-					setUnshifted();
+					shifted = false;
+					read = 0;
+					temp = 0;
 				} else {
-					if (!out.hasRemaining()) {
-						return overflow(in);
+					if (dp == dl) {
+						return (long) sp << 32 | dp;
 					}
-					CoderResult result = handleBase64(in, out, b);
-					if (result != null) {
-						return result;
+					if (strict) {
+						return Long.MIN_VALUE | (long) sp << 32 | dp;
 					}
-				}
-				justShifted = false;
-			} else {
-				if (b == shift) {
-					base64mode = true;
-					if (justUnshifted && strict) {
-						return malformed(in);
+					put(dst, dp++, ch);
+					final boolean waiting = temp != 0 || read >= 6;
+					shifted = false;
+					read = 0;
+					temp = 0;
+					if (waiting) {
+						return Long.MIN_VALUE | (long) sp << 32 | dp;
 					}
-					justShifted = true;
-					continue;
 				}
-				if ( !out.hasRemaining()) {
-					return overflow(in);
-				}
-				out.put((char) b);
-				justUnshifted = false;
+				sp++;
+				afterShift = false;
+			}
+			if (whole && ((shifted && strict) || temp != 0 || read >= 6)) {
+				return Long.MIN_VALUE | (long) sp << 32 | dp;
+			}
+			return (long) sp << 32 | dp;
+		} finally {
+			if ( !whole) {
+				base64mode = shifted;
+				bitsRead = read;
+				tempChar = temp;
+				justShifted = afterShift;
+				justUnshifted = afterUnshift;
 			}
 		}
-		return CoderResult.UNDERFLOW;
-	}
-
-	private CoderResult overflow(ByteBuffer in) {
-		in.position(in.position() - 1);
-		return CoderResult.OVERFLOW;
 	}
 
 	/**
-	 * Decodes a byte in <i>base 64 mode</i>. Will directly write a character to
-	 * the output buffer if completed.
+	 * Copies a run of direct characters, a char per byte, up to the next 
+	 * shift char. Runs from an array into an array are copied by a plain 
+	 * loop, which HotSpot compiles to a faster loop than the word-wise scan 
+	 * used for runs from a buffer: they are read a word (8 bytes) at a time
+	 * and scanned for the next shift or non-ASCII byte using 
+	 * {@link SwarUtil}. Without an output, the run is just skipped.
+	 * Characters taking the place of bytes are copied as they are.
 	 * 
-	 * @param in	The input buffer
-	 * @param out	The output buffer
-	 * @param lastRead	Last byte read from the input buffer
-	 * @return CoderResult.malformed if a non-base 64 character was encountered
-	 *         in strict mode, null otherwise
-	 */
-	private CoderResult handleBase64(ByteBuffer in, CharBuffer out,
-		byte lastRead)
+	 * @param src	The input as taken by the loop
+	 * @param sp	The index of the first byte to copy
+	 * @param end	The index to stop at, at the latest
+	 * @param dst	The output as taken by the loop
+	 * @param dp	The index to store the first char at
+	 * @return the index of the first byte not copied.
+	 */
+	private int copyDirect(final Object src, int sp, final int end, 
+		final Object dst, int dp)
 	{
-		CoderResult result = null;
-		int sextet = base64.getSextet(lastRead);
-		if (sextet >= 0) {
-			bitsRead += 6;
-			if (bitsRead < 16) {
-				tempChar += sextet << (16 - bitsRead);
-			} else {
-				bitsRead -= 16;
-				tempChar += sextet >> (bitsRead);
-				out.put((char) tempChar);
-				tempChar = (sextet << (16 - bitsRead)) & 0xFFFF;
+		if (src instanceof byte[]) {
+			final byte[] in = (byte[]) src;
+			if (dst instanceof char[]) {
+				final char[] out = (char[]) dst;
+				byte b;
+				while (sp < end && (b = in[sp]) != shift) {
+					out[dp++ ] = (char) b;
+					sp++;
+				}
+				return sp;
+			}
+			if (dst == null) {
+				// no output, just count
+				while (sp < end && in[sp] != shift) {
+					sp++;
+				}
+				return sp;
 			}
-		} else {
-			if (strict) {
-				return malformed(in);
+			final CharBuffer out = (CharBuffer) dst;
+			byte b;
+			while (sp < end && (b = in[sp]) != shift) {
+				out.put(dp++, (char) b);
+				sp++;
+			}
+			return sp;
+		}
+		if ( !(src instanceof ByteBuffer)) {
+			final CharSequence in = (CharSequence) src;
+			char ch;
+			if (dst instanceof char[]) {
+				final char[] out = (char[]) dst;
+				while (sp < end && (ch = in.charAt(sp)) != shift) {
+					out[dp++ ] = ch;
+					sp++;
+				}
+				return sp;
 			}
-			out.put((char) lastRead);
-			if (base64bitsWaiting()) {
-				result = malformed(in);
+			while (sp < end && (ch = in.charAt(sp)) != shift) {
+				put(dst, dp++, ch);
+				sp++;
 			}
-			setUnshifted();
+			return sp;
 		}
-		return result;
+		final ByteBuffer in = (ByteBuffer) src;
+		final boolean bigEndian = in.order() == ByteOrder.BIG_ENDIAN;
+		// bit offset of the first and distance to the next byte in a word
+		final int first = bigEndian ? 56 : 0;
+		final int step = bigEndian ? -8 : 8;
+		while (sp < end) {
+			if (end - sp >= 8) {
+				final long word = in.getLong(sp);
+				final int n = dst == null
+					? SwarUtil.indexOf(word, shiftPattern, bigEndian)
+					: SwarUtil.indexOfStop(word, shiftPattern, bigEndian);
+				if (dst instanceof char[]) {
+					final char[] out = (char[]) dst;
+					for (int i = 0, bit = first; i < n; i++, bit += step) {
+						out[dp + i] = (char) ((word >>> bit) & 0x7F);
+					}
+				} else if (dst != null) {
+					final CharBuffer out = (CharBuffer) dst;
+					for (int i = 0, bit = first; i < n; i++, bit += step) {
+						out.put(dp + i, (char) ((word >>> bit) & 0x7F));
+					}
+				}
+				sp += n;
+				dp += n;
+				if (n == 8) {
+					continue;
+				}
+			}
+			final byte b = in.get(sp);
+			if (b == shift) {
+				break;
+			}
+			put(dst, dp++, (char) b);
+			sp++;
+		}
+		return sp;
 	}
 
-	@Override
-	protected CoderResult implFlush(CharBuffer out) {
-		return (base64mode && strict) || base64bitsWaiting()
-			? CoderResult.malformedForLength(1)
-			: CoderResult.UNDERFLOW;
+	/**
+	 * @param src	The input as taken by the loop
+	 * @param i	The index of the byte to read
+	 * @return the byte at <code>i</code> of the input, sign extended to a 
+	 * 	char like a direct char is decoded, resp. the char taking its place.
+	 */
+	private static char charAt(final Object src, final int i) {
+		if (src instanceof byte[]) {
+			return (char) ((byte[]) src)[i];
+		}
+		return src instanceof ByteBuffer 
+			? (char) ((ByteBuffer) src).get(i) 
+			: ((CharSequence) src).charAt(i);
 	}
 
-	@Override
-	protected void implReset() {
-		setUnshifted();
-		justUnshifted = false;
+	/**
+	 * @param src	The input as taken by the loop
+	 * @param i	The index of the first byte of the block
+	 * @return the block as decoded by {@link Base64Util#decodeBlock(long)}.
+	 */
+	private long decodeBlock(final Object src, final int i) {
+		if (src instanceof byte[]) {
+			return base64.decodeBlock((byte[]) src, i);
+		}
+		if ( !(src instanceof ByteBuffer)) {
+			return base64.decodeBlock((CharSequence) src, i);
+		}
+		final ByteBuffer in = (ByteBuffer) src;
+		final long word = in.getLong(i);
+		return base64.decodeBlock(in.order() == ByteOrder.BIG_ENDIAN 
+			? word : Long.reverseBytes(word));
 	}
 
 	/**
-	 * Resets the input buffer position to just before the last byte read, and
-	 * returns a result indicating to skip the last byte.
+	 * Writes a char to the output, if any.
 	 * 
-	 * @param in	The input buffer
-	 * @return CoderResult.malformedForLength(1);
+	 * @param dst	The output as taken by the loop
+	 * @param i	The index to write to
+	 * @param ch	The char to write
 	 */
-	private CoderResult malformed(ByteBuffer in) {
-		in.position(in.position() - 1);
-		return CoderResult.malformedForLength(1);
+	private static void put(final Object dst, final int i, final char ch) {
+		if (dst instanceof char[]) {
+			((char[]) dst)[i] = ch;
+		} else if (dst != null) {
+			((CharBuffer) dst).put(i, ch);
+		}
+	}
+
+	/**
+	 * Writes the chars of a decoded block.
+	 * 
+	 * @param dst	The output as taken by the loop
+	 * @param bits	The chars to write, the first one in bits 32..47
+	 * @param dp	The index to store the first of 
+	 * 	{@link Base64Util#BLOCK_CHARS} chars at
+	 */
+	private static void putBlock(final Object dst, final long bits, 
+		final int dp)
+	{
+		if (dst instanceof char[]) {
+			final char[] out = (char[]) dst;
+			out[dp] = (char) (bits >>> 32);
+			out[dp + 1] = (char) (bits >>> 16);
+			out[dp + 2] = (char) bits;
+		} else if (dst != null) {
+			final CharBuffer out = (CharBuffer) dst;
+			out.put(dp, (char) (bits >>> 32));
+			out.put(dp + 1, (char) (bits >>> 16));
+			out.put(dp + 2, (char) bits);
+		}
 	}
 
 	/**
-	 * @return {@code true} if there are base64 encoded characters waiting to 
-	 * be written
+	 * @return {@code true} if the input must not end in the current state, 
+	 * 	i.e. in <i>base 64 mode</i> of a strict charset or with base 64 
+	 * 	encoded characters waiting to be written.
 	 */
-	private boolean base64bitsWaiting() {
-		return tempChar != 0 || bitsRead >= 6;
+	private boolean malformedAtEnd() {
+		return (base64mode && strict) || tempChar != 0 || bitsRead >= 6;
 	}
 
 	/**
@@ -189,4 +707,4 @@ class UTF7StyleCharsetDecoder
 		bitsRead = 0;
 		tempChar = 0;
 	}
-}
\ No newline at end of file
+}
@@ -24,116 +24,620 @@
 package com.beetstra.jutf7;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
+import java.util.Arrays;
 
 /**
  * The CharsetEncoder used to encode both variants of the UTF-7 charset and the
  * modified-UTF-7 charset.
+ * <p>
+ * All encoding is done by a single loop, which {@link #encodeLoop} shares
+ * with {@link UTF7StyleCodec}. It reads the chars from an array, if 
+ * accessible, or else from a character sequence, and writes the bytes to an
+ * array or a buffer, or as chars to a char array. When encoding some input 
+ * as a whole, the loop neither uses nor changes the state of the encoder, 
+ * so the codec shares a single encoder between all threads for that.
+ * </p>
  * 
  * @author Jaap Beetstra
  */
-class UTF7StyleCharsetEncoder
+final class UTF7StyleCharsetEncoder
 	extends CharsetEncoder
 {
+	/** the replacement of a new encoder */
+	static final byte[] REPLACEMENT = { (byte) '?' };
 	private static final float AVG_BYTES_PER_CHAR = 1.5f;
 	private static final float MAX_BYTES_PER_CHAR = 5.0f;
+	// max. number of bytes a single char may produce in encodeLoop
+	private static final int MAX_BYTES_PER_LOOP = 3;
+	// the remaining base 64 char and the unshift
+	private static final int MAX_FLUSH_BYTES = 2;
+	// longest run of direct chars, which may be cheaper to base 64 encode
+	private static final int MAX_STAY_RUN = 4;
+	// max. number of chars following such a run, taken into account
+	private static final int MAX_LOOKAHEAD = 8;
 	private final UTF7StyleCharset cs;
 	private final Base64Util base64;
 	private final byte shift;
 	private final byte unshift;
 	private final boolean strict;
+	private final boolean sizeOptimal;
+	// state of base 64 mode between calls, kept in locals while in the loop
 	private boolean base64mode;
 	private int bitsToOutput;
 	private int sextet;
+	// direct chars still to be base 64 encoded, since that is shorter
+	private int staying;
 
 	UTF7StyleCharsetEncoder(UTF7StyleCharset cs, Base64Util base64,
 		boolean strict)
+	{
+		this(cs, base64, strict, false);
+	}
+
+	/**
+	 * @param cs	The charset of the encoder
+	 * @param base64	The base 64 alphabet of the charset
+	 * @param strict	Whether the charset is strict about the unshift char
+	 * @param sizeOptimal	If {@code true}, short runs of direct chars 
+	 * 	within base 64 encoded text get base 64 encoded as well, if that 
+	 * 	results in less bytes.
+	 */
+	UTF7StyleCharsetEncoder(UTF7StyleCharset cs, Base64Util base64,
+		boolean strict, boolean sizeOptimal)
 	{
 		super(cs, AVG_BYTES_PER_CHAR, MAX_BYTES_PER_CHAR);
 		this.cs = cs;
 		this.base64 = base64;
 		this.strict = strict;
+		this.sizeOptimal = sizeOptimal;
 		this.shift = cs.shift();
 		this.unshift = cs.unshift();
 	}
 
+	/**
+	 * Tells whether this encoder base 64 encodes short runs of direct chars,
+	 * if that results in less bytes.
+	 * 
+	 * @return {@code true} if created by 
+	 * 	{@link UTF7StyleCharset#newSizeOptimalEncoder()}.
+	 */
+	boolean isSizeOptimal() {
+		return sizeOptimal;
+	}
+
+	/**
+	 * Other than the default implementation, this does not create a decoder
+	 * to decode the replacement, which is done each time an encoder gets 
+	 * created.
+	 */
+	@Override
+	public boolean isLegalReplacement(byte[] repl) {
+		// called from the super constructor, so the fields are not set yet
+		final UTF7StyleCharset cs = (UTF7StyleCharset) charset();
+		if (cs.codec == null) {
+			// the encoder of the codec itself, which keeps the replacement
+			return Arrays.equals(repl, REPLACEMENT);
+		}
+		return cs.codec.decodedLength(repl, 0, repl.length) >= 0;
+	}
+
+	/**
+	 * Every char can be encoded: those not encoded directly are base 64
+	 * encoded. This holds for unpaired surrogates as well, since their UTF-16
+	 * code unit simply gets base 64 encoded. So other than the default
+	 * implementation no trial encoding is done.
+	 */
+	@Override
+	public boolean canEncode(char c) {
+		return true;
+	}
+
+	/**
+	 * Every sequence of chars can be encoded, see {@link #canEncode(char)}.
+	 */
+	@Override
+	public boolean canEncode(CharSequence sequence) {
+		return true;
+	}
+
 	@Override
 	protected void implReset() {
 		base64mode = false;
 		sextet = 0;
 		bitsToOutput = 0;
+		staying = 0;
 	}
 
 	@Override
 	protected CoderResult implFlush(ByteBuffer out) {
 		if (base64mode) {
-			if (out.remaining() < 2) {
+			if (out.remaining() < MAX_FLUSH_BYTES) {
 				return CoderResult.OVERFLOW;
 			}
-			if (bitsToOutput != 0) {
-				out.put(base64.getChar(sextet));
-			}
-			out.put(unshift);
+			final int doff = out.hasArray() ? out.arrayOffset() : 0;
+			final int dp = flush(out.hasArray() ? out.array() : out, 
+				doff + out.position(), bitsToOutput, sextet);
+			out.position(dp - doff);
 		}
 		return CoderResult.UNDERFLOW;
 	}
 
 	@Override
 	protected CoderResult encodeLoop(CharBuffer in, ByteBuffer out) {
-		while (in.hasRemaining()) {
-			if (out.remaining() < 4) {
-				return CoderResult.OVERFLOW;
-			}
-			char ch = in.get();
-			if (cs.canEncodeDirectly(ch)) {
-				if (base64mode) {
-					// write remaining base64 char
-					if (bitsToOutput != 0) {
-						out.put(base64.getChar(sextet));
+		final int position = in.position();
+		// as a CharSequence, a buffer is indexed relative to its position
+		final int soff = in.hasArray() ? in.arrayOffset() + position : 0;
+		final int doff = out.hasArray() ? out.arrayOffset() : 0;
+		final long r = encode(in.hasArray() ? in.array() : in, soff, 
+			soff + in.remaining(), out.hasArray() ? out.array() : out, 
+			doff + out.position(), doff + out.limit(), false);
+		in.position(position + readPos(r) - soff);
+		out.position(writePos(r) - doff);
+		return in.hasRemaining() ? CoderResult.OVERFLOW : CoderResult.UNDERFLOW;
+	}
+
+	/**
+	 * Encodes the given characters completely, i.e. including what
+	 * {@link #implFlush} writes, into the given array. The state of this 
+	 * encoder is neither used nor changed, so any number of threads may call
+	 * this at the same time. The caller is responsible for providing 
+	 * {@link UTF7StyleCodec#encodedLength} bytes of room.
+	 * 
+	 * @param src	The characters to encode
+	 * @param sp	The index of the first character to encode
+	 * @param sl	The index following the last character to encode
+	 * @param dst	Where to store the encoded bytes
+	 * @param dp	The index of <code>dst</code> to store the first byte at
+	 * @return the index of <code>dst</code> following the last byte written
+	 */
+	int encode(final CharSequence src, final int sp, final int sl,
+		final byte[] dst, final int dp)
+	{
+		return writePos(encode(src, sp, sl, dst, dp, Integer.MAX_VALUE, true));
+	}
+
+	/**
+	 * Encodes the given characters like 
+	 * {@link #encode(CharSequence, int, int, byte[], int)}, but into a 
+	 * buffer using absolute access. The position of <code>dst</code> is not
+	 * changed.
+	 * 
+	 * @param src	The characters to encode
+	 * @param sp	The index of the first character to encode
+	 * @param sl	The index following the last character to encode
+	 * @param dst	Where to store the encoded bytes
+	 * @param dp	The index of <code>dst</code> to store the first byte at
+	 * @return the index of <code>dst</code> following the last byte written
+	 */
+	int encode(final CharSequence src, final int sp, final int sl, 
+		final ByteBuffer dst, final int dp)
+	{
+		return writePos(encode(src, sp, sl, dst, dp, Integer.MAX_VALUE, true));
+	}
+
+	/**
+	 * Encodes the given characters like 
+	 * {@link #encode(CharSequence, int, int, byte[], int)}, but stores each
+	 * encoded byte as a char.
+	 * 
+	 * @param src	The characters to encode
+	 * @param sp	The index of the first character to encode
+	 * @param sl	The index following the last character to encode
+	 * @param dst	Where to store the encoded bytes
+	 * @param dp	The index of <code>dst</code> to store the first byte at
+	 * @return the index of <code>dst</code> following the last byte written
+	 */
+	int encode(final CharSequence src, final int sp, final int sl, 
+		final char[] dst, final int dp)
+	{
+		return writePos(encode(src, sp, sl, dst, dp, Integer.MAX_VALUE, true));
+	}
+
+	/**
+	 * @param r	A result of the loop
+	 * @return the index following the last char read.
+	 */
+	private static int readPos(final long r) {
+		return (int) (r >>> 32);
+	}
+
+	/**
+	 * @param r	A result of the loop
+	 * @return the index following the last byte written.
+	 */
+	private static int writePos(final long r) {
+		return (int) r;
+	}
+
+	/**
+	 * The encode loop. Output capacity is checked exactly per character only,
+	 * if less than {@link #MAX_BYTES_PER_LOOP} bytes are left. The state of
+	 * <i>base 64 mode</i> is kept in local variables while in the loop. 
+	 * Unless encoding all of the input at once, it is taken from and left in
+	 * the fields of this encoder.
+	 * 
+	 * @param src	The characters to encode: an array or a sequence
+	 * @param sp	The index of the first character to encode
+	 * @param sl	The index following the last character available
+	 * @param dst	Where to store the bytes: an array, a buffer without an
+	 * 	accessible array, a char array taking a char per byte, or 
+	 * 	{@code null} to count them only
+	 * @param dp	The index to store the first byte at
+	 * @param dl	The index following the last byte available
+	 * @param whole	If {@code true}, the input is encoded starting in the 
+	 * 	initial state and followed by what {@link #implFlush} writes, 
+	 * 	without using or changing the state of this encoder.
+	 * @return the indexes reached as <code>(long) sp &lt;&lt; 32 | dp</code>.
+	 * 	Either all chars have been read, or the room is used up.
+	 */
+	private long encode(final Object src, int sp, final int sl, 
+		final Object dst, int dp, final int dl, final boolean whole)
+	{
+		// the common case of arrays is not dispatched per char
+		final char[] in = src instanceof char[] ? (char[]) src : null;
+		final byte[] out = dst instanceof byte[] ? (byte[]) dst : null;
+		boolean shifted = !whole && base64mode;
+		int bits = whole ? 0 : bitsToOutput;
+		int pending = whole ? 0 : sextet;
+		int stay = whole ? 0 : staying;
+		try {
+			while (sp < sl) {
+				if ( !shifted) {
+					// copy the run of direct chars, capacity checked only once
+					final int start = sp;
+					sp = copyDirect(src, sp, sp + Math.min(sl - sp, dl - dp), 
+						dst, dp);
+					dp += sp - start;
+					if (sp == sl) {
+						break;
+					}
+				} else if (bits == 0 && sl - sp >= Base64Util.BLOCK_CHARS
+					&& dl - dp >= Base64Util.BLOCK_BYTES)
+				{
+					final char c0 = charAt(src, sp);
+					final char c1 = charAt(src, sp + 1);
+					final char c2 = charAt(src, sp + 2);
+					if ( !cs.canEncodeDirectly(c0) && !cs.canEncodeDirectly(c1)
+						&& !cs.canEncodeDirectly(c2))
+					{
+						// inside a long run, encode a whole block at once
+						final long block = 
+							(long) c0 << 32 | (long) c1 << 16 | c2;
+						if (out != null) {
+							base64.encodeBlock(block, out, dp);
+						} else {
+							putBlock(dst, block, dp);
+						}
+						sp += Base64Util.BLOCK_CHARS;
+						dp += Base64Util.BLOCK_BYTES;
+						continue;
+					}
+				}
+				final char ch = in != null ? in[sp] : charAt(src, sp);
+				if (sizeOptimal && shifted && stay == 0 
+					&& cs.canEncodeDirectly(ch))
+				{
+					stay = directRunToStay(src, sp, sl, bits);
+				}
+				final boolean direct = stay == 0 && cs.canEncodeDirectly(ch);
+				if (dl - dp < MAX_BYTES_PER_LOOP 
+					&& dl - dp < bytesRequired(ch, direct, shifted, bits))
+				{
+					return (long) sp << 32 | dp;
+				}
+				sp++;
+				if (direct) {
+					// base64mode: write remaining base64 char and unshift
+					if (bits != 0) {
+						put(dst, dp++, base64.getChar(pending));
 					}
-					// unshift, if required
 					if (base64.contains(ch) || ch == unshift || strict) {
-						out.put(unshift);
+						put(dst, dp++, unshift);
+					}
+					shifted = false;
+					pending = 0;
+					bits = 0;
+					put(dst, dp++, (byte) ch);
+				} else if (ch == shift && !shifted) {
+					put(dst, dp++, shift);
+					put(dst, dp++, unshift);
+				} else {
+					if ( !shifted) {
+						put(dst, dp++, shift);
+						shifted = true;
+					} else if (stay != 0) {
+						stay--;
+					}
+					// write all fully determined base 64 chars, remember the
+					// bits of the last one
+					bits += 16;
+					while (bits >= 6) {
+						bits -= 6;
+						pending += (ch >> bits);
+						pending &= 0x3F;
+						final byte b = base64.getChar(pending);
+						if (out != null) {
+							out[dp++ ] = b;
+						} else {
+							put(dst, dp++, b);
+						}
+						pending = 0;
 					}
-					base64mode = false;
-					sextet = 0;
-					bitsToOutput = 0;
+					pending = (ch << (6 - bits)) & 0x3F;
+				}
+			}
+			if (whole && shifted) {
+				dp = flush(dst, dp, bits, pending);
+			}
+			return (long) sp << 32 | dp;
+		} finally {
+			if ( !whole) {
+				base64mode = shifted;
+				bitsToOutput = bits;
+				sextet = pending;
+				staying = stay;
+			}
+		}
+	}
+
+	/**
+	 * Copies a run of direct characters, a byte per char. Runs into an array
+	 * are copied by a plain loop, runs into a buffer are classified 4 chars
+	 * at a time and written a word (8 bytes) at a time. Without an output,
+	 * the run is just skipped.
+	 * 
+	 * @param src	The input as taken by the loop
+	 * @param sp	The index of the first character to copy
+	 * @param end	The index to stop at, at the latest
+	 * @param dst	The output as taken by the loop
+	 * @param dp	The index to store the first byte at
+	 * @return the index of the first character not copied.
+	 */
+	private int copyDirect(final Object src, int sp, final int end, 
+		final Object dst, int dp)
+	{
+		if (dst instanceof byte[]) {
+			final byte[] out = (byte[]) dst;
+			if (src instanceof char[]) {
+				final char[] in = (char[]) src;
+				while (sp < end && cs.canEncodeDirectly(in[sp])) {
+					out[dp++ ] = (byte) in[sp++ ];
 				}
-				out.put((byte) ch);
-			} else if (ch == shift && !base64mode) {
-				out.put(shift);
-				out.put(unshift);
 			} else {
-				encodeBase64(ch, out);
+				final CharSequence in = (CharSequence) src;
+				char ch;
+				while (sp < end && cs.canEncodeDirectly(ch = in.charAt(sp))) {
+					out[dp++ ] = (byte) ch;
+					sp++;
+				}
 			}
+			return sp;
 		}
-		return CoderResult.UNDERFLOW;
+		if (dst instanceof char[]) {
+			final char[] out = (char[]) dst;
+			if (src instanceof char[]) {
+				final char[] in = (char[]) src;
+				while (sp < end && cs.canEncodeDirectly(in[sp])) {
+					out[dp++ ] = in[sp++ ];
+				}
+			} else {
+				final CharSequence in = (CharSequence) src;
+				char ch;
+				while (sp < end && cs.canEncodeDirectly(ch = in.charAt(sp))) {
+					out[dp++ ] = ch;
+					sp++;
+				}
+			}
+			return sp;
+		}
+		if (dst == null) {
+			// no output, just count
+			while (sp < end && cs.canEncodeDirectly(charAt(src, sp))) {
+				sp++;
+			}
+			return sp;
+		}
+		final ByteBuffer out = (ByteBuffer) dst;
+		final boolean bigEndian = out.order() == ByteOrder.BIG_ENDIAN;
+		while (end - sp >= 8) {
+			// classify 4 chars at once, the rest is done below
+			final long hi = pack(src, sp);
+			final long lo = pack(src, sp + 4);
+			if ( !cs.canEncodeDirectly(hi) || !cs.canEncodeDirectly(lo)) {
+				break;
+			}
+			out.putLong(dp, SwarUtil.narrow(hi, lo, bigEndian));
+			sp += 8;
+			dp += 8;
+		}
+		char ch;
+		while (sp < end && cs.canEncodeDirectly(ch = charAt(src, sp))) {
+			out.put(dp++, (byte) ch);
+			sp++;
+		}
+		return sp;
 	}
 
 	/**
-	 * Writes the bytes necessary to encode a character in <i>base 64 mode</i>.
-	 * All bytes which are fully determined will be written. The fields
-	 * <code>bitsToOutput</code> and <code>sextet</code> are used to remember
-	 * the bytes not yet fully determined.
+	 * Decides in <i>base 64 mode</i>, whether the run of direct characters 
+	 * starting at <code>sp</code> is to be base 64 encoded as well. That is
+	 * only the case for a short run followed by a char, which requires base
+	 * 64 encoding, if staying in base 64 mode results in less bytes than
+	 * leaving and entering it again. At the end of the available input, base
+	 * 64 mode is always left.
 	 * 
-	 * @param out
-	 * @param ch
+	 * @param src	The input as taken by the loop
+	 * @param sp	The index of the first char of the run
+	 * @param sl	The index following the last char available
+	 * @param bits	The number of bits of the last base 64 char pending
+	 * @return the number of direct chars to base 64 encode, 0 if base 64
+	 * 	mode is to be left.
 	 */
-	private void encodeBase64(char ch, ByteBuffer out) {
-		if ( !base64mode) {
-			out.put(shift);
+	private int directRunToStay(final Object src, final int sp, final int sl,
+		final int bits)
+	{
+		int i = sp + 1;
+		while (i < sl && i - sp <= MAX_STAY_RUN 
+			&& cs.canEncodeDirectly(charAt(src, i)))
+		{
+			i++;
+		}
+		final int k = i - sp;
+		// outside base 64 mode, the shift char only takes two bytes
+		if (i == sl || k > MAX_STAY_RUN || charAt(src, i) == shift) {
+			return 0;
 		}
-		base64mode = true;
-		bitsToOutput += 16;
-		while (bitsToOutput >= 6) {
-			bitsToOutput -= 6;
-			sextet += (ch >> bitsToOutput);
-			sextet &= 0x3F;
-			out.put(base64.getChar(sextet));
-			sextet = 0;
+		final int end = Math.min(sl, i + MAX_LOOKAHEAD);
+		while (i < end && !cs.canEncodeDirectly(charAt(src, i))) {
+			i++;
+		}
+		return staysShorter(charAt(src, sp), k, i - sp - k, i == end, bits) 
+			? k : 0;
+	}
+
+	/**
+	 * Compares the number of bytes required to encode a run of direct chars
+	 * and the base 64 encoded chars following it, when staying in <i>base 64
+	 * mode</i> and when leaving it.
+	 * 
+	 * @param first	The first char of the run
+	 * @param k	The number of direct chars
+	 * @param m	The number of base 64 encoded chars following them
+	 * @param open	Whether more base 64 encoded chars may follow
+	 * @param bits	The number of bits of the last base 64 char pending
+	 * @return {@code true} if staying results in less bytes, whatever 
+	 * 	follows.
+	 */
+	private boolean staysShorter(char first, int k, int m, boolean open,
+		int bits)
+	{
+		// bytes written when leaving, besides the base 64 chars
+		final int overhead = (bits != 0 ? 1 : 0)
+			+ (base64.contains(first) || first == unshift || strict ? 1 : 0)
+			+ k + 1;
+		final int stay = bits + 16 * (k + m);
+		final int leave = 16 * m;
+		// both end in base 64 mode, but with different bits pending, so 
+		// compare for any number of base 64 encoded chars following (the 
+		// number of pending bits repeats after three chars)
+		final int maxX = open ? 48 : 16;
+		for (int x = 0; x < maxX; x += 16) {
+			if ((stay + x + 5) / 6 >= overhead + (leave + x + 5) / 6) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the exact number of bytes encoding the given character in the
+	 * given state requires.
+	 * 
+	 * @param ch	The character to encode next
+	 * @param direct	Whether the character gets encoded directly
+	 * @param shifted	Whether in <i>base 64 mode</i>
+	 * @param bits	The number of bits of the last base 64 char pending
+	 * @return the number of bytes required (at most 
+	 * 	{@link #MAX_BYTES_PER_LOOP}).
+	 */
+	int bytesRequired(char ch, boolean direct, boolean shifted,
+		int bits)
+	{
+		if (direct) {
+			if ( !shifted) {
+				return 1;
+			}
+			int n = bits != 0 ? 2 : 1;
+			return base64.contains(ch) || ch == unshift || strict ? n + 1 : n;
+		}
+		if ( !shifted) {
+			return ch == shift ? 2 : 3;
+		}
+		return (bits + 16) / 6;
+	}
+
+	/**
+	 * Writes the remaining base 64 char and the unshift char, which leave
+	 * <i>base 64 mode</i>. The caller is responsible for providing 
+	 * {@link #MAX_FLUSH_BYTES} bytes of room.
+	 * 
+	 * @param dst	The output as taken by the loop
+	 * @param dp	The index to write to
+	 * @param bits	The number of bits of the last base 64 char pending
+	 * @param pending	The last base 64 char
+	 * @return the index following the last byte written
+	 */
+	private int flush(final Object dst, int dp, final int bits, 
+		final int pending)
+	{
+		if (bits != 0) {
+			put(dst, dp++, base64.getChar(pending));
+		}
+		put(dst, dp++, unshift);
+		return dp;
+	}
+
+	/**
+	 * @param src	The input as taken by the loop
+	 * @param i	The index of the character to read
+	 * @return the character at the given index of the input.
+	 */
+	private static char charAt(final Object src, final int i) {
+		return src instanceof char[] 
+			? ((char[]) src)[i] 
+			: ((CharSequence) src).charAt(i);
+	}
+
+	/**
+	 * @param src	The input as taken by the loop
+	 * @param i	The index of the first character to pack
+	 * @return 4 characters of the input as packed by {@link SwarUtil#pack}.
+	 */
+	private static long pack(final Object src, final int i) {
+		return src instanceof char[] 
+			? SwarUtil.pack((char[]) src, i) 
+			: SwarUtil.pack((CharSequence) src, i);
+	}
+
+	/**
+	 * Writes a byte to the output, if any.
+	 * 
+	 * @param dst	The output as taken by the loop
+	 * @param i	The index to write to
+	 * @param b	The byte to write
+	 */
+	private static void put(final Object dst, final int i, final byte b) {
+		if (dst instanceof byte[]) {
+			((byte[]) dst)[i] = b;
+		} else if (dst instanceof char[]) {
+			((char[]) dst)[i] = (char) b;
+		} else if (dst != null) {
+			((ByteBuffer) dst).put(i, b);
+		}
+	}
+
+	/**
+	 * Writes the base 64 characters of a block.
+	 * 
+	 * @param dst	The output as taken by the loop
+	 * @param bits	The characters to encode, the first one in bits 32..47
+	 * @param dp	The index to store the first of 
+	 * 	{@link Base64Util#BLOCK_BYTES} base 64 characters at
+	 */
+	private void putBlock(final Object dst, final long bits, final int dp) {
+		if (dst instanceof byte[]) {
+			base64.encodeBlock(bits, (byte[]) dst, dp);
+		} else if (dst instanceof char[]) {
+			base64.encodeBlock(bits, (char[]) dst, dp);
+		} else if (dst != null) {
+			final ByteBuffer out = (ByteBuffer) dst;
+			final long word = base64.encodeBlock(bits);
+			out.putLong(dp, out.order() == ByteOrder.BIG_ENDIAN 
+				? word : Long.reverseBytes(word));
 		}
-		sextet = (ch << (6 - bitsToOutput)) & 0x3F;
 	}
-}
\ No newline at end of file
+}
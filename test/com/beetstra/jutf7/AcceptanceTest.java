@@ -159,6 +159,8 @@ public class AcceptanceTest {
 		final String encoded = encodeGetBytes(s);
 		assertEquals(encoded, encodeCharsetEncode(s));
 		assertEquals("problem decoding " + encoded, s, decode(encoded));
+		verifyBufferKindsDecode(encoded, s);
+		verifyBufferKindsEncode(s, encoded);
 		for (int i = 4; i < encoded.length(); i++ ) {
 			ByteBuffer in = CharsetTestUtil.wrap(encoded);
 			decoder.reset();
@@ -218,6 +220,71 @@ public class AcceptanceTest {
 		return decoded.toString();
 	}
 
+	/**
+	 * Decode the given string from buffers, which are not backed by an array
+	 * or whose array has an offset.
+	 * 
+	 * @param encoded	string to decode
+	 * @param decoded	expected result
+	 * @throws UnsupportedEncodingException
+	 */
+	protected void verifyBufferKindsDecode(String encoded, String decoded)
+		throws UnsupportedEncodingException
+	{
+		ByteBuffer[] in = new ByteBuffer[] {
+			CharsetTestUtil.wrap(encoded).asReadOnlyBuffer(),
+			CharsetTestUtil.wrap("##" + encoded),
+		};
+		in[1].position(2);
+		in[1] = in[1].slice();
+		for (int i=0; i < in.length; i++) {
+			decoder.reset();
+			CharBuffer out = CharBuffer.allocate(decoded.length() + 3);
+			out.position(3);
+			out = out.slice();
+			assertEquals(CoderResult.UNDERFLOW, decoder.decode(in[i], out, true));
+			assertEquals(CoderResult.UNDERFLOW, decoder.flush(out));
+			out.flip();
+			assertEquals("buffer kind " + i, decoded, out.toString());
+		}
+	}
+
+	/**
+	 * Encode the given string into buffers, which are not backed by an array
+	 * or whose array has an offset.
+	 * 
+	 * @param decoded	string to encode
+	 * @param encoded	expected result
+	 * @throws UnsupportedEncodingException
+	 */
+	protected void verifyBufferKindsEncode(String decoded, String encoded)
+		throws UnsupportedEncodingException
+	{
+		CharBuffer[] in = new CharBuffer[] {
+			CharBuffer.wrap(decoded),
+			CharBuffer.wrap("##" + decoded, 2, decoded.length() + 2),
+			CharBuffer.wrap(("##" + decoded).toCharArray()),
+		};
+		in[2].position(2);
+		in[2] = in[2].slice();
+		ByteBuffer[] out = new ByteBuffer[] {
+			ByteBuffer.allocateDirect(encoded.length() + 4),
+			ByteBuffer.allocate(encoded.length() + 7),
+			ByteBuffer.allocate(encoded.length() + 7),
+		};
+		out[1].position(3);
+		out[1] = out[1].slice();
+		out[2].position(3);
+		out[2] = out[2].slice();
+		for (int i=0; i < in.length; i++) {
+			encoder.reset();
+			assertEquals(CoderResult.UNDERFLOW, encoder.encode(in[i], out[i], true));
+			assertEquals(CoderResult.UNDERFLOW, encoder.flush(out[i]));
+			out[i].flip();
+			assertEquals("buffer kind " + i, encoded, CharsetTestUtil.asString(out[i]));
+		}
+	}
+
 	/**
 	 * @param i
 	 * @param encoded
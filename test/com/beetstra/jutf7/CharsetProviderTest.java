@@ -26,6 +26,7 @@ package com.beetstra.jutf7;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.charset.Charset;
@@ -95,6 +96,21 @@ public class CharsetProviderTest {
 		assertNull(tested.charsetForName("X-DOES-NOT-EXIST"));
 	}
 
+	/**
+	 * 
+	 */
+	@Test
+	public void testCaseAndNearMisses() {
+		assertSame(UTF7Charsets.UTF_7, tested.charsetForName("Utf-7"));
+		assertSame(UTF7Charsets.IMAP_UTF_7, 
+			tested.charsetForName("x-MoDiFiEd-Utf-7"));
+		assertNull(tested.charsetForName(""));
+		assertNull(tested.charsetForName("UTF-8"));
+		assertNull(tested.charsetForName("UTF-77"));
+		assertNull(tested.charsetForName("UTF"));
+		assertNull(tested.charsetForName("UTF-7 "));
+	}
+
 	/**
 	 * 
 	 */
@@ -113,6 +129,19 @@ public class CharsetProviderTest {
 		assertTrue(found.contains(charset3));
 	}
 
+	/**
+	 * 
+	 */
+	@Test
+	public void testConstants() {
+		assertSame(UTF7Charsets.UTF_7, tested.charsetForName("UTF-7"));
+		assertSame(UTF7Charsets.UTF_7_OPTIONAL, 
+			tested.charsetForName("X-UTF-7-OPTIONAL"));
+		assertSame(UTF7Charsets.IMAP_UTF_7, tested.charsetForName("imap-utf-7"));
+		assertSame(UTF7Charsets.IMAP_UTF_7, 
+			new CharsetProvider().charsetForName("X-MODIFIED-UTF-7"));
+	}
+
 	/**
 	 * 
 	 */
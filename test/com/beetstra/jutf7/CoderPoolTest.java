@@ -0,0 +1,130 @@
+/* ====================================================================
+ * Copyright (c) 2006 J.T. Beetstra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining 
+ * a copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including 
+ * without limitation the rights to use, copy, modify, merge, publish, 
+ * distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to 
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be 
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY 
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, 
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * ====================================================================
+ */
+package com.beetstra.jutf7;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import org.junit.Test;
+
+/**
+ * @author 	Firstname Lastname
+ * @version	$Revision$
+ */
+public class CoderPoolTest {
+	private final UTF7StyleCharset tested = new ModifiedUTF7Charset(
+		"X-MODIFIED-UTF-7", new String[] {});
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncoderReuse() throws Exception {
+		CharsetEncoder encoder = tested.acquireEncoder();
+		ByteBuffer out = ByteBuffer.allocate(16);
+		// leave the encoder in base 64 mode
+		encoder.encode(CharBuffer.wrap("\u00e4"), out, false);
+		tested.releaseEncoder(encoder);
+		CharsetEncoder again = tested.acquireEncoder();
+		assertSame(encoder, again);
+		out.clear();
+		again.encode(CharBuffer.wrap("a"), out, true);
+		again.flush(out);
+		out.flip();
+		assertEquals("a", CharsetTestUtil.asString(out));
+		assertNotSame(again, tested.acquireEncoder());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecoderReuse() throws Exception {
+		CharsetDecoder decoder = tested.acquireDecoder();
+		CharBuffer out = CharBuffer.allocate(16);
+		// leave the decoder in base 64 mode
+		decoder.decode(CharsetTestUtil.wrap("&AO"), out, false);
+		tested.releaseDecoder(decoder);
+		CharsetDecoder again = tested.acquireDecoder();
+		assertSame(decoder, again);
+		assertEquals("a", again.decode(CharsetTestUtil.wrap("a")).toString());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testChangedCoderDropped() throws Exception {
+		CharsetEncoder encoder = tested.acquireEncoder();
+		encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		tested.releaseEncoder(encoder);
+		assertNotSame(encoder, tested.acquireEncoder());
+		CharsetDecoder decoder = tested.acquireDecoder();
+		decoder.replaceWith("?");
+		tested.releaseDecoder(decoder);
+		assertNotSame(decoder, tested.acquireDecoder());
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSizeOptimalEncoderDropped() throws Exception {
+		UTF7StyleCharset utf7 = new UTF7Charset("X-UTF-7", new String[] {},
+			false);
+		CharsetEncoder encoder = utf7.newSizeOptimalEncoder();
+		utf7.releaseEncoder(encoder);
+		CharsetEncoder again = utf7.acquireEncoder();
+		assertNotSame(encoder, again);
+		ByteBuffer out = again.encode(CharBuffer.wrap("\u4e00\u4e00a\u4e00\u4e00"));
+		assertEquals("+TgBOAA-a+TgBOAA-", CharsetTestUtil.asString(out));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testForeignCoder() throws Exception {
+		try {
+			tested.releaseEncoder(UTF7Charsets.IMAP_UTF_7.newEncoder());
+			fail("accepted encoder of another charset");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			tested.releaseDecoder(UTF7Charsets.IMAP_UTF_7.newDecoder());
+			fail("accepted decoder of another charset");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -24,7 +24,9 @@
 package com.beetstra.jutf7;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
@@ -227,6 +229,18 @@ public class ModifiedUTF7Test
 		assertMalformed("&&ImIDkQ-", "");
 	}
 
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodeNonAsciiInBase64() throws Exception {
+		CharsetDecoder decoder = tested.newDecoder();
+		ByteBuffer in = ByteBuffer.wrap(new byte[] { '&', 'I', 'K', (byte) 0xC1 });
+		CharBuffer out = CharBuffer.allocate(1024);
+		assertEquals(CoderResult.malformedForLength(1), decoder.decode(in, out, true));
+		assertEquals(3, in.position());
+	}
+
 	/**
 	 * @throws Exception
 	 */
@@ -324,6 +338,44 @@ public class ModifiedUTF7Test
 		assertEquals("caf&AOk-", zimbraImapUTF7encode(string));
 	}
 
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testCanEncode() throws Exception {
+		CharsetEncoder encoder = tested.newEncoder();
+		assertTrue(encoder.canEncode('a'));
+		assertTrue(encoder.canEncode('&'));
+		assertTrue(encoder.canEncode((char) 0xe9));
+		assertTrue(encoder.canEncode((char) 0xd800));
+		assertTrue(encoder.canEncode(new String(new char[] { 'c', 0xd83d, 0xde00 })));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testReplacement() throws Exception {
+		CharsetEncoder encoder = tested.newEncoder();
+		assertEquals("?", CharsetTestUtil.asString(ByteBuffer.wrap(encoder.replacement())));
+		assertTrue(encoder.isLegalReplacement("&AOk-".getBytes("US-ASCII")));
+		assertFalse(encoder.isLegalReplacement("&AOk".getBytes("US-ASCII")));
+		assertFalse(encoder.isLegalReplacement("&AOk-&AOk-".getBytes("US-ASCII")));
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testNoSizeOptimalEncoder() {
+		try {
+			((UTF7StyleCharset) tested).newSizeOptimalEncoder();
+			fail("printable chars may not be base 64 encoded");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
 	/**
 	 * @param encoded
 	 * @param decoded
@@ -0,0 +1,130 @@
+/* ====================================================================
+ * Copyright (c) 2006 J.T. Beetstra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining 
+ * a copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including 
+ * without limitation the rights to use, copy, modify, merge, publish, 
+ * distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to 
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be 
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY 
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, 
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * ====================================================================
+ */
+package com.beetstra.jutf7;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+
+/**
+ * @author 	Firstname Lastname
+ * @version	$Revision$
+ */
+public class SwarUtilTest {
+	private static final long PLUS = SwarUtil.pattern((byte) '+');
+
+	private static int indexOfStop(String s, ByteOrder order) {
+		ByteBuffer bb = ByteBuffer.allocate(8).order(order);
+		for (int i=0; i < 8; i++) {
+			bb.put((byte) s.charAt(i));
+		}
+		return SwarUtil.indexOfStop(bb.getLong(0), PLUS, 
+			order == ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testIndexOfStop() {
+		ByteOrder[] orders = { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN };
+		for (ByteOrder order : orders) {
+			assertEquals(8, indexOfStop("abcdefgh", order));
+			assertEquals(0, indexOfStop("+bcdefgh", order));
+			assertEquals(7, indexOfStop("abcdefg+", order));
+			assertEquals(3, indexOfStop("abc+ef+h", order));
+			assertEquals(2, indexOfStop("ab\u00e9+efgh", order));
+			assertEquals(5, indexOfStop("abcde\u00ff+h", order));
+			// no false positives next to a match
+			assertEquals(1, indexOfStop("*+*,****", order));
+			assertEquals(8, indexOfStop("*,*,*,*,", order));
+			assertEquals(0, indexOfStop("\u0080\u0000\u0000\u0000\u0000\u0000\u0000\u0000", order));
+		}
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testIndexOf() {
+		long word = 0x61E92B622B00FF80L;
+		assertEquals(2, SwarUtil.indexOf(word, PLUS, true));
+		assertEquals(2, SwarUtil.indexOf(Long.reverseBytes(word), PLUS, false));
+		assertEquals(8, SwarUtil.indexOf(0x8080808080808080L, PLUS, true));
+		assertEquals(8, SwarUtil.indexOf(0x2A2C2A2C2A2C2A2CL, PLUS, false));
+		assertEquals(7, SwarUtil.indexOf(0x2A2C2A2C2A2C2A2BL, PLUS, true));
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testNarrow() {
+		CharBuffer in = CharBuffer.wrap("abcdefgh");
+		long hi = SwarUtil.pack(in, 0);
+		long lo = SwarUtil.pack(in, 4);
+		assertEquals(0x0061006200630064L, hi);
+		assertEquals(0x6162636465666768L, SwarUtil.narrow(hi, lo, true));
+		assertEquals(0x6867666564636261L, SwarUtil.narrow(hi, lo, false));
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testCanEncodeDirectly() {
+		UTF7StyleCharset[] charsets = { new UTF7Charset("UTF-7", new String[] { }, false),
+			new UTF7Charset("X-UTF-7-OPTIONAL", new String[] { }, true),
+			new ModifiedUTF7Charset("X-MODIFIED-UTF-7", new String[] { }),
+			// printable US-ASCII except the shift char is a range as well
+			UTF7Charsets.builder("X-UTF-7-PRINTABLE").base64("\t\r\n")
+				.direct(" !\"#$%&'()*,-./0123456789:;<=>?@[\\]^_`{|}~").build() };
+		char[] probes = { 0, 0x1F, 0x20, '!', '&', '+', '-', '?', '@', 'A', 
+			'\\', '~', 0x7F, 0x80, 0xE9, 0x100, 0x2020, 0xFFFF };
+		for (UTF7StyleCharset cs : charsets) {
+			for (int i = 0; i < probes.length; i++) {
+				for (int j = 0; j < 128; j++) {
+					char[] chars = { 'a', probes[i], (char) j, 'z' };
+					for (int k = 0; k < 4; k++) {
+						CharBuffer in = CharBuffer.wrap(chars);
+						boolean expected = cs.canEncodeDirectly(chars[0]) 
+							&& cs.canEncodeDirectly(chars[1])
+							&& cs.canEncodeDirectly(chars[2]) 
+							&& cs.canEncodeDirectly(chars[3]);
+						assertEquals(cs.name() + " " + new String(chars), expected,
+							cs.canEncodeDirectly(SwarUtil.pack(in, 0)));
+						// rotate the chars through all lanes
+						char c = chars[0];
+						System.arraycopy(chars, 1, chars, 0, 3);
+						chars[3] = c;
+					}
+				}
+			}
+		}
+	}
+}
@@ -94,6 +94,8 @@ public class TestBase64 {
 		assertEquals(0, tested.getSextet((byte) 'A'));
 		assertEquals(63, tested.getSextet((byte) '/'));
 		assertEquals( -1, tested.getSextet((byte) ','));
+		assertEquals( -1, tested.getSextet((byte) 0x80));
+		assertEquals( -1, tested.getSextet((byte) 0xC1));
 	}
 
 	/**
@@ -106,4 +108,33 @@ public class TestBase64 {
 		assertEquals('a', tested.getChar(26));
 		assertEquals('0', tested.getChar(52));
 	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodeBlock() throws Exception {
+		byte[] block = "IKwA4QDp".getBytes("US-ASCII");
+		assertEquals(0x20AC00E100E9L, tested.decodeBlock(block, 0));
+		assertEquals(0x20AC00E100E9L, tested.decodeBlock(0x494B774134514470L));
+		assertEquals(0xFFFFFFFFFFFFL, tested.decodeBlock(
+			"////////".getBytes("US-ASCII"), 0));
+		assertEquals( -1, tested.decodeBlock("IKwA4QD,".getBytes("US-ASCII"), 0));
+		assertEquals( -1, tested.decodeBlock("IKw-4QDp".getBytes("US-ASCII"), 0));
+		block[5] = (byte) 0xC1;
+		assertEquals( -1, tested.decodeBlock(block, 0));
+		assertEquals( -1, tested.decodeBlock(0x494B7741C1514470L));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncodeBlock() throws Exception {
+		byte[] block = new byte[10];
+		tested.encodeBlock(0x20AC00E100E9L, block, 1);
+		assertEquals("\0IKwA4QDp\0", new String(block, "US-ASCII"));
+		assertEquals(0x494B774134514470L, tested.encodeBlock(0x20AC00E100E9L));
+		assertEquals(0x2F2F2F2F2F2F2F2FL, tested.encodeBlock(0xFFFFFFFFFFFFL));
+	}
 }
@@ -0,0 +1,547 @@
+/* ====================================================================
+ * Copyright (c) 2006 J.T. Beetstra
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining 
+ * a copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including 
+ * without limitation the rights to use, copy, modify, merge, publish, 
+ * distribute, sublicense, and/or sell copies of the Software, and to 
+ * permit persons to whom the Software is furnished to do so, subject to 
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be 
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+ * IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY 
+ * CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, 
+ * TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ * ====================================================================
+ */
+package com.beetstra.jutf7;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author 	Firstname Lastname
+ * @version	$Revision$
+ */
+public class UTF7CodecTest {
+	private static final String[] TEXTS = {
+		"", "INBOX", "Entw\u00fcrfe", "A\u2262\u0391.", "&", "+", "a-b",
+		"\u65e5\u672c\u8a9e", "caf\u00e9 au lait \u20ac\u00e1\u00e9\u20ac\u00e1\u00e9\u20ac"
+	};
+
+	private static String ascii(byte[] b) throws Exception {
+		return new String(b, "US-ASCII");
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncode() throws Exception {
+		for (String s : TEXTS) {
+			assertEquals(s, ascii(s.getBytes("UTF-7")), ascii(UTF7Codec.encode(s)));
+			assertEquals(s, ascii(s.getBytes("X-UTF-7-OPTIONAL")), 
+				ascii(UTF7Codec.encodeOptional(s)));
+			assertEquals(s, ascii(s.getBytes("X-MODIFIED-UTF-7")), 
+				ascii(UTF7Codec.encodeModified(s)));
+		}
+		assertEquals("&AOQ-rger", ascii(UTF7Codec.encodeModified("\u00e4rger")));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncodeToString() throws Exception {
+		for (String s : TEXTS) {
+			assertEquals(s, ascii(UTF7Codec.encode(s)), UTF7Codec.encodeToString(s));
+			assertEquals(s, ascii(UTF7Codec.encodeOptional(s)), 
+				UTF7Codec.encodeOptionalToString(new StringBuilder(s)));
+			assertEquals(s, ascii(UTF7Codec.encodeModified(s)), 
+				UTF7Codec.encodeModifiedToString(s));
+		}
+		String s = "INBOX.Sent";
+		assertSame(s, UTF7Codec.encodeModifiedToString(s));
+		assertEquals("&AOQ-rger", UTF7Codec.encodeModifiedToString("\u00e4rger"));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodeString() throws Exception {
+		for (String s : TEXTS) {
+			assertEquals(s, UTF7Codec.decode(ascii(UTF7Codec.encode(s))));
+			assertEquals(s, UTF7Codec.decodeOptional(
+				new StringBuilder(ascii(UTF7Codec.encodeOptional(s)))));
+			assertEquals(s, UTF7Codec.decodeModified(ascii(UTF7Codec.encodeModified(s))));
+		}
+		String s = "INBOX.Sent";
+		assertSame(s, UTF7Codec.decodeModified(s));
+		assertEquals("\u00e4rger", UTF7Codec.decodeModified("&AOQ-rger"));
+		assertEquals("\u00e4r\u00e9", UTF7Codec.decodeModified("&AOQ-r\u00e9"));
+		String[] malformed = { "&", "&AO", "&a-", "&ImIDkQ-&ImIDkQ-", "&A\u00e9-" };
+		for (String m : malformed) {
+			try {
+				UTF7Codec.decodeModified(m);
+				fail("accepted " + m);
+			} catch (MalformedInputException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncodeIntoArray() throws Exception {
+		for (String s : TEXTS) {
+			byte[] expected = UTF7Codec.encodeModified(s);
+			byte[] b = new byte[expected.length + 3];
+			assertEquals(s, expected.length, 
+				UTF7Codec.encodeModified(new StringBuilder(s), b, 2));
+			assertEquals(s, ascii(expected), ascii(b).substring(2, b.length - 1));
+			assertEquals(0, b[1]);
+			assertEquals(0, b[b.length - 1]);
+			if (expected.length > 1) {
+				b = new byte[expected.length + 1];
+				assertEquals(s, -2, UTF7Codec.encodeModified(s, b, 3));
+				assertEquals(s, ascii(new byte[b.length]), ascii(b));
+			}
+			expected = UTF7Codec.encode(s);
+			b = new byte[expected.length];
+			assertEquals(s, expected.length, UTF7Codec.encode(s, b, 0));
+			assertEquals(s, ascii(expected), ascii(b));
+		}
+		try {
+			UTF7Codec.encodeOptional("a", new byte[1], 2);
+			fail("accepted offset 2");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncodeIntoBuffer() throws Exception {
+		ByteBuffer[] buffers = { ByteBuffer.allocate(64), 
+			ByteBuffer.allocateDirect(64), 
+			ByteBuffer.allocateDirect(64).order(ByteOrder.LITTLE_ENDIAN) };
+		for (ByteBuffer bb : buffers) {
+			for (String s : TEXTS) {
+				byte[] expected = UTF7Codec.encode(s);
+				bb.clear().position(5);
+				assertEquals(s, expected.length, UTF7Codec.encode(s, bb));
+				assertEquals(s, 5 + expected.length, bb.position());
+				bb.flip().position(5);
+				byte[] b = new byte[bb.remaining()];
+				bb.get(b);
+				assertEquals(s, ascii(expected), ascii(b));
+				if (expected.length > 0) {
+					bb.clear().position(65 - expected.length);
+					assertEquals(s, -1, UTF7Codec.encode(s, bb));
+					assertEquals(s, 65 - expected.length, bb.position());
+				}
+				try {
+					UTF7Codec.encodeModified(s, bb.asReadOnlyBuffer());
+					fail("wrote to read only buffer");
+				} catch (ReadOnlyBufferException e) {
+					// expected, also if empty or too short
+				}
+			}
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testIdentity() throws Exception {
+		String s = "Archive/2023/Invoices + Receipts";
+		assertEquals(s, ascii(UTF7Codec.encodeModified(s)));
+		byte[] b = s.getBytes("US-ASCII");
+		assertEquals(s, UTF7Codec.decodeModified(b, 0, b.length));
+		assertEquals("Receipts", UTF7Codec.decodeModified(b, b.length - 8, 8));
+		// bytes >= 0x80 are no identity, but decoded like the decoder does
+		b = new byte[] { 'a', (byte) 0xE9, 'b', '&', 'A', 'O', 'k', '-' };
+		assertEquals(new String(b, "X-MODIFIED-UTF-7"), 
+			UTF7Codec.decodeModified(b, 0, b.length));
+		assertEquals(new String(b, 0, 3, "X-MODIFIED-UTF-7"), 
+			UTF7Codec.decodeModified(b, 0, 3));
+	}
+
+	/**
+	 * 
+	 */
+	@Test
+	public void testEncodedLength() {
+		for (String s : TEXTS) {
+			assertEquals(s, UTF7Codec.encode(s).length, UTF7Codec.encodedLength(s));
+			assertEquals(s, UTF7Codec.encodeOptional(s).length, 
+				UTF7Codec.encodedLengthOptional(s));
+			assertEquals(s, UTF7Codec.encodeModified(s).length, 
+				UTF7Codec.encodedLengthModified(s));
+		}
+		// "+AOk." resp. "+AOk-a", the unshift is omitted only before "."
+		assertEquals(5, UTF7Codec.encodedLength("\u00e9."));
+		assertEquals(6, UTF7Codec.encodedLength("\u00e9a"));
+		// "&AOk-." resp. "a&-b"
+		assertEquals(6, UTF7Codec.encodedLengthModified("\u00e9."));
+		assertEquals(4, UTF7Codec.encodedLengthModified(new StringBuilder("a&b")));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecode() throws Exception {
+		for (String s : TEXTS) {
+			byte[] b = UTF7Codec.encode(s);
+			assertEquals(s, UTF7Codec.decode(b, 0, b.length));
+			b = UTF7Codec.encodeOptional(s);
+			assertEquals(s, UTF7Codec.decodeOptional(b, 0, b.length));
+			b = UTF7Codec.encodeModified(s);
+			assertEquals(s, UTF7Codec.decodeModified(b, 0, b.length));
+		}
+		byte[] b = "xx&AOQ-rgerxx".getBytes("US-ASCII");
+		assertEquals("\u00e4rger", UTF7Codec.decodeModified(b, 2, b.length - 4));
+		b = "A+ImIDkQ.".getBytes("US-ASCII");
+		assertEquals("A\u2262\u0391.", UTF7Codec.decode(b, 0, b.length));
+		b = "xxab+AOQAtg-cdxx".getBytes("US-ASCII");
+		assertEquals("ab\u00e4\u00b6cd", UTF7Codec.decode(b, 2, b.length - 4));
+		b = "ab+-".getBytes("US-ASCII");
+		assertEquals("ab+", UTF7Codec.decode(b, 0, b.length));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodeIntoArray() throws Exception {
+		for (String s : TEXTS) {
+			byte[] b = UTF7Codec.encodeModified(s);
+			char[] c = new char[s.length() + 3];
+			assertEquals(s, s.length(), 
+				UTF7Codec.decodeModified(b, 0, b.length, c, 2));
+			assertEquals(s, new String(c, 2, s.length()));
+			assertEquals(0, c[1]);
+			assertEquals(0, c[c.length - 1]);
+			if (s.length() > 1) {
+				c = new char[s.length() + 1];
+				assertEquals(s, -2, UTF7Codec.decodeModified(b, 0, b.length, c, 3));
+				assertEquals(s, new String(new char[c.length]), new String(c));
+			}
+		}
+		byte[] b = "&AOQ-".getBytes("US-ASCII");
+		assertEquals(-1, UTF7Codec.decodeModified(b, 0, b.length, new char[0], 0));
+		try {
+			UTF7Codec.decodeModified(b, 0, b.length, new char[0], 1);
+			fail("accepted offset 1");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+		b = "&AOQ-&AOQ-".getBytes("US-ASCII");
+		try {
+			UTF7Codec.decodeModified(b, 0, b.length, new char[1], 0);
+			fail("accepted &AOQ-&AOQ-");
+		} catch (MalformedInputException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodeIntoBuffer() throws Exception {
+		for (String s : TEXTS) {
+			byte[] b = UTF7Codec.encode(s);
+			ByteBuffer[] buffers = { ByteBuffer.wrap(b), 
+				ByteBuffer.allocateDirect(b.length), 
+				ByteBuffer.allocateDirect(b.length).order(ByteOrder.LITTLE_ENDIAN) };
+			for (ByteBuffer bb : buffers) {
+				bb.put(b, 0, bb.remaining()).flip();
+				char[] c = new char[s.length() + 1];
+				assertEquals(s, s.length(), UTF7Codec.decode(bb, c, 1));
+				assertEquals(s, new String(c, 1, s.length()));
+				assertEquals(b.length, bb.position());
+				if (s.length() > 0) {
+					bb.rewind();
+					assertEquals(s, -1, UTF7Codec.decode(bb, c, 2));
+					assertEquals(0, bb.position());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodeAppend() throws Exception {
+		StringBuilder sb = new StringBuilder("* LIST () \"/\" ");
+		byte[] b = "INBOX/&AMQ-rger".getBytes("US-ASCII");
+		assertEquals(11, UTF7Codec.decodeModified(b, 0, b.length, sb));
+		assertEquals("* LIST () \"/\" INBOX/\u00c4rger", sb.toString());
+		b = "&AOQ-&a-".getBytes("US-ASCII");
+		try {
+			UTF7Codec.decodeModified(b, 0, b.length, sb);
+			fail("accepted &AOQ-&a-");
+		} catch (MalformedInputException e) {
+			assertEquals("* LIST () \"/\" INBOX/\u00c4rger", sb.toString());
+		}
+		for (String s : TEXTS) {
+			b = UTF7Codec.encodeOptional(s);
+			Appendable a = new StringBuilder();
+			assertEquals(s, s.length(), 
+				UTF7Codec.decodeOptional(b, 0, b.length, a));
+			assertEquals(s, a.toString());
+		}
+		// more chars than get decoded at once
+		StringBuilder text = new StringBuilder();
+		while (text.length() < 5000) {
+			text.append("Gr\u00f6\u00dfe \u4e00\u4e8c ");
+		}
+		String s = text.toString();
+		b = UTF7Codec.encode(s);
+		Appendable a = new StringWriter();
+		assertEquals(s.length(), UTF7Codec.decode(b, 0, b.length, a));
+		assertEquals(s, a.toString());
+		ByteBuffer[] buffers = { ByteBuffer.allocate(b.length + 2),
+			ByteBuffer.allocateDirect(b.length + 2) };
+		for (ByteBuffer bb : buffers) {
+			bb.put((byte) 'x').put(b).put((byte) 'x').flip().position(1);
+			bb.limit(b.length + 1);
+			a = new StringWriter();
+			assertEquals(s.length(), UTF7Codec.decode(bb.slice(), a));
+			assertEquals(s, a.toString());
+			sb = new StringBuilder("x");
+			assertEquals(s.length(), UTF7Codec.decode(bb, sb));
+			assertEquals("x" + s, sb.toString());
+			assertEquals(bb.limit(), bb.position());
+			bb.clear();
+			bb.put("x&AOQ-&a-".getBytes("US-ASCII")).flip().position(1);
+			try {
+				UTF7Codec.decodeModified(bb, sb);
+				fail("accepted &AOQ-&a-");
+			} catch (MalformedInputException e) {
+				assertEquals("x" + s, sb.toString());
+				assertEquals(1, bb.position());
+			}
+			a = new StringBuilder();
+			try {
+				UTF7Codec.decodeModified(bb, a);
+				fail("accepted &AOQ-&a-");
+			} catch (MalformedInputException e) {
+				assertEquals("\u00e4", a.toString());
+				assertEquals(1, bb.position());
+			}
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodedLength() throws Exception {
+		for (String s : TEXTS) {
+			byte[] b = UTF7Codec.encode(s);
+			assertEquals(s, s.length(), UTF7Codec.decodedLength(b, 0, b.length));
+			b = UTF7Codec.encodeOptional(s);
+			assertEquals(s, s.length(), UTF7Codec.decodedLengthOptional(b, 0, b.length));
+			b = UTF7Codec.encodeModified(s);
+			assertEquals(s, s.length(), UTF7Codec.decodedLengthModified(b, 0, b.length));
+			ByteBuffer bb = ByteBuffer.allocateDirect(b.length + 1);
+			bb.put((byte) 'x').put(b).flip().position(1);
+			assertEquals(s, s.length(), UTF7Codec.decodedLengthModified(bb));
+			assertEquals(1, bb.position());
+		}
+		byte[] b = "A+ImIDkQ.+-".getBytes("US-ASCII");
+		assertEquals(5, UTF7Codec.decodedLength(b, 0, b.length));
+		assertEquals(4, UTF7Codec.decodedLength(b, 0, b.length - 2));
+		b = "&ImIDkQ-&ImIDkQ-".getBytes("US-ASCII");
+		assertEquals( -1, UTF7Codec.decodedLengthModified(b, 0, b.length));
+		assertEquals(2, UTF7Codec.decodedLengthModified(b, 0, 8));
+		assertEquals( -1, UTF7Codec.decodedLengthModified(b, 0, 7));
+		b = "&IKwA4QDpA-".getBytes("US-ASCII");
+		assertEquals( -1, UTF7Codec.decodedLengthModified(b, 0, b.length));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodedCodePointCount() throws Exception {
+		// U+1F600 as surrogate pair
+		String s = "a\ud83d\ude00\u00e9\ud83d";
+		byte[] b = UTF7Codec.encode(s);
+		assertEquals(4, UTF7Codec.decodedCodePointCount(b, 0, b.length));
+		b = UTF7Codec.encodeModified(s);
+		assertEquals(4, UTF7Codec.decodedCodePointCountModified(b, 0, b.length));
+		b = UTF7Codec.encodeOptional(s);
+		assertEquals(4, UTF7Codec.decodedCodePointCountOptional(b, 0, b.length));
+		// pairs split by the chunks decoded at once
+		StringBuilder sb = new StringBuilder("a");
+		for (int i = 0; i < 1500; i++ ) {
+			sb.append("\ud83d\ude00");
+		}
+		b = UTF7Codec.encode(sb.toString());
+		assertEquals(1501, UTF7Codec.decodedCodePointCount(b, 0, b.length));
+		b = "&2D0-".getBytes("US-ASCII");
+		assertEquals(1, UTF7Codec.decodedCodePointCountModified(b, 0, b.length));
+		b = "&2D1-".getBytes("US-ASCII");
+		assertEquals( -1, UTF7Codec.decodedCodePointCountModified(b, 0, b.length));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDecodeMalformed() throws Exception {
+		String[] malformed = { "&", "&AO", "&a-", "&ImIDkQ-&ImIDkQ-", "&[-", 
+			"&IKwA4QDpA-" };
+		for (String s : malformed) {
+			byte[] b = s.getBytes("US-ASCII");
+			try {
+				UTF7Codec.decodeModified(b, 0, b.length);
+				fail("accepted " + s);
+			} catch (MalformedInputException e) {
+				// expected
+			}
+		}
+		byte[] b = "+IKwA#".getBytes("US-ASCII");
+		try {
+			UTF7Codec.decode(b, 0, b.length);
+			fail("accepted +IKwA#");
+		} catch (MalformedInputException e) {
+			// expected
+		}
+		b = "ab&AOQ-&a-".getBytes("US-ASCII");
+		try {
+			UTF7Codec.decodeModified(b, 0, b.length);
+			fail("accepted ab&AOQ-&a-");
+		} catch (MalformedInputException e) {
+			assertEquals(1, e.getInputLength());
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testIsValid() throws Exception {
+		for (String s : TEXTS) {
+			// long direct runs get scanned a word at a time
+			s = "INBOX/Archive 2010/" + s + "/Sent Items" + s;
+			byte[] b = UTF7Codec.encode(s);
+			assertTrue(s, UTF7Codec.isValid(b, 0, b.length));
+			assertTrue(s, UTF7Codec.isValid(ByteBuffer.wrap(b)));
+			b = UTF7Codec.encodeOptional(s);
+			assertTrue(s, UTF7Codec.isValidOptional(b, 0, b.length));
+			b = UTF7Codec.encodeModified(s);
+			assertTrue(s, UTF7Codec.isValidModified(b, 0, b.length));
+			ByteBuffer bb = ByteBuffer.allocateDirect(b.length + 1);
+			bb.put((byte) 'x').put(b).flip().position(1);
+			assertTrue(s, UTF7Codec.isValidModified(bb));
+			assertEquals(1, bb.position());
+			bb = ByteBuffer.allocate(b.length + 2).order(ByteOrder.LITTLE_ENDIAN);
+			bb.put((byte) 'x').put(b).flip().position(1);
+			assertTrue(s, UTF7Codec.isValidModified(bb.slice()));
+		}
+		String[] malformed = { "&", "&AO", "&a-", "&ImIDkQ-&ImIDkQ-", "&[-", 
+			"&IKwA4QDpA-", "Sent Items/Archive/&AOQ", 
+			"Sent Items/Archive&-&AOk-&AOk-" };
+		for (String s : malformed) {
+			byte[] b = s.getBytes("US-ASCII");
+			assertFalse(s, UTF7Codec.isValidModified(b, 0, b.length));
+			assertFalse(s, UTF7Codec.isValidModified(ByteBuffer.wrap(b)));
+			ByteBuffer bb = ByteBuffer.allocateDirect(b.length);
+			bb.put(b).flip();
+			assertFalse(s, UTF7Codec.isValidModified(bb));
+		}
+		// not strict: implicit unshift, but no bits may be left over
+		byte[] b = "Sent Items/Archive+AOk-+AOk.".getBytes("US-ASCII");
+		assertTrue(UTF7Codec.isValid(b, 0, b.length));
+		assertTrue(UTF7Codec.isValidOptional(ByteBuffer.wrap(b)));
+		b = "Sent Items/Archive+IKwA#".getBytes("US-ASCII");
+		assertFalse(UTF7Codec.isValid(b, 0, b.length));
+		assertFalse(UTF7Codec.isValid(ByteBuffer.wrap(b)));
+	}
+
+	/**
+	 * isValid and decodedLength scan without decoding, so check them against
+	 * a decoder reporting malformed input on random bytes, which are mostly
+	 * base 64 and shift chars to hit the segment rules.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testIsValidRandom() throws Exception {
+		final byte[] alphabet = 
+			"+&-,/AQgw09az. \u00e4".getBytes("ISO-8859-1");
+		final UTF7StyleCharset[] charsets = { UTF7Charsets.UTF_7, 
+			UTF7Charsets.UTF_7_OPTIONAL, UTF7Charsets.IMAP_UTF_7 };
+		final Random random = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			final byte[] b = new byte[random.nextInt(24)];
+			for (int k = 0; k < b.length; k++) {
+				b[k] = alphabet[random.nextInt(alphabet.length)];
+			}
+			final ByteBuffer direct = ByteBuffer.allocateDirect(b.length);
+			direct.put(b).flip();
+			for (final UTF7StyleCharset cs : charsets) {
+				int expected;
+				try {
+					expected = cs.newDecoder()
+						.onMalformedInput(CodingErrorAction.REPORT)
+						.decode(ByteBuffer.wrap(b)).length();
+				} catch (CharacterCodingException e) {
+					expected = -1;
+				}
+				final String msg = cs.name() + " " + ascii(b);
+				assertEquals(msg, expected, 
+					cs.codec.decodedLength(b, 0, b.length));
+				assertEquals(msg, expected, 
+					cs.codec.decodedLength(direct, 0, b.length));
+				assertEquals(msg, expected >= 0, 
+					cs.codec.isValid(b, 0, b.length));
+				assertEquals(msg, expected >= 0, 
+					cs.codec.isValid(ByteBuffer.wrap(b), 0, b.length));
+				assertEquals(msg, expected >= 0, 
+					cs.codec.isValid(direct, 0, b.length));
+			}
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testDecodeOutOfBounds() throws Exception {
+		UTF7Codec.decodeModified(new byte[4], 2, 3);
+	}
+}
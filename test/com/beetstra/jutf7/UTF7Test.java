@@ -24,13 +24,17 @@
 package com.beetstra.jutf7;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 
 import org.junit.Test;
@@ -160,6 +164,10 @@ public class UTF7Test
 		assertEquals("\u2262\u0391123\u2262\u0391", decode("+ImIDkQ-123+ImIDkQ"));
 		assertEquals("\u2262\u0391123\u2262\u0391", zimbraUTF7decode("+ImIDkQ-123+ImIDkQ"));
 		assertEquals("\u2262\u0391123\u2262\u0391", freeutilsUTF7decode("+ImIDkQ-123+ImIDkQ"));
+		c = "\u20ac\u00e1\u00e9\u20ac\u00e1\u00e9\u20ac\u00e1";
+		assertEquals(c, decode("+IKwA4QDpIKwA4QDpIKwA4Q-"));
+		assertEquals(c, zimbraUTF7decode("+IKwA4QDpIKwA4QDpIKwA4Q-"));
+		assertEquals(c, freeutilsUTF7decode("+IKwA4QDpIKwA4QDpIKwA4Q-"));
 	}
 
 	/**
@@ -204,6 +212,11 @@ public class UTF7Test
 		verifyMalformed("+IKx#");
 		verifyMalformed("+IKwA#");
 		verifyMalformed("+IKwA4#");
+		verifyMalformed("+IKwA4QDpIKwA4#");
+		verifyMalformed("+IKwA4QDpIKwA?4QDp-");
+		CharsetDecoder decoder = tested.newDecoder();
+		ByteBuffer in = ByteBuffer.wrap(new byte[] { '+', 'I', 'K', (byte) 0xC1 });
+		assertTrue(decoder.decode(in, CharBuffer.allocate(16), true).isMalformed());
 		String c = new String(new char[] { 0x20ac, 0xE1 });
 		assertEquals(c, decode("+IKwA4Q"));
 		assertEquals(c, zimbraUTF7decode("+IKwA4Q"));
@@ -248,6 +261,17 @@ public class UTF7Test
 		assertEquals(CoderResult.UNDERFLOW, decoder.decode(in, out, true));
 		out.flip();
 		assertEquals("A\u2262\u0391.", out.toString());
+		decoder.reset();
+		in = CharsetTestUtil.wrap("+IKwA4QDpIKwA4QDp-");
+		out = CharBuffer.allocate(5);
+		assertEquals(CoderResult.OVERFLOW, decoder.decode(in, out, true));
+		out.flip();
+		assertEquals("\u20ac\u00e1\u00e9\u20ac\u00e1", out.toString());
+		out = CharBuffer.allocate(1);
+		assertEquals(CoderResult.UNDERFLOW, decoder.decode(in, out, true));
+		assertEquals(CoderResult.UNDERFLOW, decoder.flush(out));
+		out.flip();
+		assertEquals("\u00e9", out.toString());
 	}
 
 	private void verifyMalformed(final String encoded)
@@ -322,6 +346,63 @@ public class UTF7Test
 		assertEquals("+IKwA4QDpAPoA7QDzAP0A5ADrAO8A9gD8AP8-", freeutilsUTF7encode(c));
 	}
 
+	/**
+	 * Encodes the given text in a single call into output buffers of the 
+	 * given capacity, which are collected.
+	 * 
+	 * @param decoded	The text to encode
+	 * @param out	The output buffer, whose capacity is used for each chunk
+	 * @return the encoded text
+	 * @throws UnsupportedEncodingException
+	 */
+	private String encodeChunked(String decoded, ByteBuffer out)
+		throws UnsupportedEncodingException
+	{
+		CharsetEncoder encoder = tested.newEncoder();
+		CharBuffer in = CharBuffer.wrap(decoded.toCharArray());
+		StringBuffer sb = new StringBuffer();
+		CoderResult result;
+		do {
+			result = encoder.encode(in, out, true);
+			CharsetTestUtil.outToSB(out, sb);
+		} while (result.isOverflow());
+		do {
+			result = encoder.flush(out);
+			CharsetTestUtil.outToSB(out, sb);
+		} while (result.isOverflow());
+		return sb.toString();
+	}
+
+	/**
+	 * Runs of 3 or more base 64 encoded chars are encoded a block (3 chars,
+	 * 8 bytes) at a time, runs ending in partial blocks are finished char by
+	 * char.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncodeBlocks() throws Exception {
+		assertEquals("a+IKwA4QDp-a", encode("a\u20ac\u00e1\u00e9a"));
+		assertEquals("a+IKwA4QDpAPo-a", encode("a\u20ac\u00e1\u00e9\u00faa"));
+		assertEquals("a+IKwA4QDpAPoA7Q-a", 
+			encode("a\u20ac\u00e1\u00e9\u00fa\u00eda"));
+		StringBuilder sb = new StringBuilder("x");
+		for (int i = 0; i < 14; i++) {
+			sb.append((char) (0x4e00 + 0x321 * i));
+			String decoded = sb.toString() + ".";
+			String expected = freeutilsUTF7encode(decoded);
+			assertEquals(expected, encode(decoded));
+			for (int size = 3; size <= 11; size++) {
+				assertEquals(decoded, expected, 
+					encodeChunked(decoded, ByteBuffer.allocate(size)));
+				assertEquals(decoded, expected, encodeChunked(decoded, 
+					ByteBuffer.allocateDirect(size).order(ByteOrder.BIG_ENDIAN)));
+				assertEquals(decoded, expected, encodeChunked(decoded, 
+					ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN)));
+			}
+		}
+	}
+
 	/**
 	 * @throws Exception
 	 */
@@ -397,4 +478,53 @@ public class UTF7Test
 		assertEquals("+AL8AvwC/-", zimbraUTF7encode(decoded2));
 		assertEquals("+AL8AvwC/-", freeutilsUTF7encode(decoded2));
 	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncodeSizeOptimal() throws Exception {
+		CharsetEncoder encoder = ((UTF7StyleCharset) tested).newSizeOptimalEncoder();
+		String decoded = new String(new char[] { 0xE9, '-', 0xE9, '.' });
+		assertEquals("+AOk--+AOk.", encode(decoded));
+		assertEquals("+AOkALQDp.", CharsetTestUtil.asString(
+			encoder.encode(CharBuffer.wrap(decoded))));
+		assertEquals(decoded, decode("+AOkALQDp."));
+		// never longer, and only when the run is short
+		String decoded2 = new String(new char[] { 0xE9, 'a', 'b', 'c', 'd', 'e', 0xE9 });
+		assertEquals(encode(decoded2), CharsetTestUtil.asString(
+			encoder.encode(CharBuffer.wrap(decoded2))));
+		assertEquals("+AOk-a+--", CharsetTestUtil.asString(
+			encoder.encode(CharBuffer.wrap(new String(new char[] { 0xE9, 'a', '+', '-' })))));
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testCustomProfile() throws Exception {
+		UTF7StyleCharset custom = UTF7Charsets.builder("X-UTF-7-TILDE")
+			.aliases("UTF-7-TILDE").includeOptional().direct("~\\").base64("'")
+			.build();
+		assertEquals("X-UTF-7-TILDE", custom.name());
+		assertTrue(custom.aliases().contains("UTF-7-TILDE"));
+		assertNull(new CharsetProvider().charsetForName("X-UTF-7-TILDE"));
+		assertEquals("a+AH4AXA-b", encode("a~\\b"));
+		assertEquals("a~\\!b+ACc-", CharsetTestUtil.asString(custom.encode("a~\\!b'")));
+		assertEquals("a~\\!b'", custom.decode(CharsetTestUtil.wrap("a~\\!b+ACc-")).toString());
+		assertEquals("+AOk~", CharsetTestUtil.asString(custom.encode("~")));
+		assertEquals("~", decode("+AOk~"));
+		try {
+			UTF7Charsets.builder("X-UTF-7-PLUS").direct("+");
+			fail("shift char accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			UTF7Charsets.builder("X-UTF-7-LATIN").direct("");
+			fail("non-ASCII char accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
 }
@@ -0,0 +1,66 @@
+/**
+ * $Id$ 
+ * 
+ * Copyright (c) 2005-2010 Jens Elkner.
+ * All Rights Reserved.
+ *
+ * This software is the proprietary information of Jens Elkner.
+ * Use is subject to license terms.
+ */
+package de.ovgu.cs.utf7;
+
+import java.nio.charset.spi.CharsetProvider;
+
+/**
+ * Microbenchmark wrt. looking up charsets by name as done by MIME parsers,
+ * i.e. with names as found in mail headers: canonical names, aliases, any
+ * case and names of charsets not provided at all.
+ * 
+ * @author 	Jens Elkner
+ * @version	$Revision$
+ */
+public class LookupBenchmark {
+	private static final String[] NAMES = { "UTF-7", "utf-7", 
+		"X-MODIFIED-UTF-7", "imap-utf-7", "x-imap4-modified-utf7", 
+		"X-UTF-7-OPTIONAL", "Unicode-2-0-UTF-7", "utf-8", "iso-8859-1",
+		"windows-1252" };
+	private static final long RUN_NANOS = 500000000L;
+	// keeps the JIT from eliminating the measured calls
+	private static int sink;
+
+	/**
+	 * Looks up {@link #NAMES} for {@link #RUN_NANOS} ns.
+	 * 
+	 * @param cp	provider to ask
+	 * @return the average time of a single lookup in ns.
+	 */
+	private static double test(CharsetProvider cp) {
+		long calls = 0;
+		long start = System.nanoTime();
+		long stop;
+		do {
+			for (int i=0; i < 100; i++) {
+				for (String name : NAMES) {
+					sink += cp.charsetForName(name) == null ? 0 : 1;
+				}
+			}
+			calls += 100 * NAMES.length;
+			stop = System.nanoTime();
+		} while (stop - start < RUN_NANOS);
+		return (double) (stop - start) / calls;
+	}
+
+	/**
+	 * Measures the lookup of charsets by name.
+	 * 
+	 * @param args	ignored
+	 */
+	@SuppressWarnings("boxing")
+	public static void main(String[] args) {
+		CharsetProvider cp = new com.beetstra.jutf7.CharsetProvider();
+		// warmup
+		test(cp);
+		System.out.printf("%s.charsetForName: %.1f ns per lookup%n", 
+			cp.getClass().getName(), test(cp));
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * $Id$ 
+ * 
+ * Copyright (c) 2005-2010 Jens Elkner.
+ * All Rights Reserved.
+ *
+ * This software is the proprietary information of Jens Elkner.
+ * Use is subject to license terms.
+ */
+package de.ovgu.cs.utf7;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.spi.CharsetProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+import net.freeutils.charset.UTF7Charset;
+import net.freeutils.charset.UTF7OptionalCharset;
+
+import com.zimbra.cs.mime.charset.ImapUTF7;
+import com.zimbra.cs.mime.charset.UTF7;
+
+/**
+ * Microbenchmark wrt. the per call setup cost of UTF-7 charset 
+ * implementations, i.e. creating coders and asking an encoder, whether it
+ * can encode a char or a short text.
+ * 
+ * @author 	Jens Elkner
+ * @version	$Revision$
+ */
+public class SetupBenchmark {
+	private static final String TEXT = "INBOX/Entw\u00fcrfe";
+	private static final long RUN_NANOS = 500000000L;
+	// keeps the JIT from eliminating the measured calls
+	private static int sink;
+
+	private static Charset[] getCharsets() {
+		ArrayList<Charset> csList = new ArrayList<Charset>();
+		CharsetProvider cp = new com.beetstra.jutf7.CharsetProvider();
+		Iterator<Charset> csi = cp.charsets();
+		while (csi.hasNext()) {
+			csList.add(csi.next());
+		}
+		csList.add(new ImapUTF7("imap-utf-7", new String[] { }));
+		csList.add(new UTF7("utf-7", new String[] { }));
+		csList.add(new UTF7Charset());
+		csList.add(new UTF7OptionalCharset());
+		Collections.reverse(csList);
+		return csList.toArray(new Charset[csList.size()]);
+	}
+
+	/**
+	 * Runs the given operation for {@link #RUN_NANOS} ns.
+	 * 
+	 * @param cs	charset to use
+	 * @param op	0 .. newEncoder, 1 .. newDecoder, 2 .. canEncode(char),
+	 * 	3 .. canEncode(CharSequence)
+	 * @return the average time of a single operation in ns.
+	 */
+	private static double test(Charset cs, int op) {
+		CharsetEncoder encoder = cs.newEncoder();
+		long calls = 0;
+		long start = System.nanoTime();
+		long stop;
+		do {
+			for (int i=0; i < 1000; i++) {
+				switch (op) {
+					case 0:
+						sink += cs.newEncoder().hashCode();
+						break;
+					case 1:
+						sink += cs.newDecoder().hashCode();
+						break;
+					case 2:
+						sink += encoder.canEncode(TEXT.charAt(i & 7)) ? 1 : 0;
+						break;
+					default:
+						sink += encoder.canEncode(TEXT) ? 1 : 0;
+				}
+			}
+			calls += 1000;
+			stop = System.nanoTime();
+		} while (stop - start < RUN_NANOS);
+		return (double) (stop - start) / calls;
+	}
+
+	/**
+	 * Measures the setup cost for all charset implementations.
+	 * 
+	 * @param args	ignored
+	 */
+	@SuppressWarnings("boxing")
+	public static void main(String[] args) {
+		Charset[] charsets = getCharsets();
+		String[] ops = { "newEncoder", "newDecoder", "canEncode(c)", 
+			"canEncode(s)" };
+		for (int x = 0; x < 2; x++) {
+			// the first round is the warmup
+			if (x == 1) {
+				System.out.printf("%58s", "Class - UTF7 type/ ns per call");
+				for (int k=0; k < ops.length; k++) {
+					System.out.printf(" %12s", ops[k]);
+				}
+				System.out.printf("%n");
+			}
+			for (Charset cs : charsets) {
+				double[] t = new double[ops.length];
+				for (int k=0; k < ops.length; k++) {
+					t[k] = test(cs, k);
+				}
+				if (x == 1) {
+					System.out.printf("%58s", cs.getClass().getName() + " - " 
+						+ cs.displayName());
+					for (int k=0; k < ops.length; k++) {
+						System.out.printf(" %12.1f", t[k]);
+					}
+					System.out.printf("%n");
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * $Id$
+ *
+ * Copyright (c) 2005-2010 Jens Elkner.
+ * All Rights Reserved.
+ *
+ * This software is the proprietary information of Jens Elkner.
+ * Use is subject to license terms.
+ */
+package de.ovgu.cs.utf7;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+
+import com.beetstra.jutf7.UTF7Charsets;
+import com.beetstra.jutf7.UTF7Codec;
+
+/**
+ * Microbenchmark wrt. rejecting malformed modified UTF-7 mailbox names as
+ * sent by IMAP clients: a full decode reporting malformed input compared to
+ * validation only, for arrays, heap and direct buffers.
+ *
+ * @author 	Jens Elkner
+ * @version	$Revision$
+ */
+public class ValidateBenchmark {
+	private static final String[] NAMES = { "INBOX", "INBOX/Drafts",
+		"Gesendete Objekte", "INBOX/&AMQ-rger", "&ZeVnLIqe-",
+		"Archive/2010/Entw&APw-rfe", "Sent Items/Archive/&AOQ",
+		"INBOX/&AOk-&AOk-", "Projects/Customers/Acme Corporation/Invoices" };
+	private static final long RUN_NANOS = 500000000L;
+	// keeps the JIT from eliminating the measured calls
+	private static int sink;
+
+	/**
+	 * Runs the given operation for {@link #RUN_NANOS} ns.
+	 *
+	 * @param names	the encoded names
+	 * @param op	0 .. decode, 1 .. isValid(byte[]), 2 .. isValid(heap
+	 * 	ByteBuffer), 3 .. isValid(direct ByteBuffer)
+	 * @return the average time of a single operation in ns.
+	 */
+	private static double test(byte[][] names, int op) {
+		ByteBuffer[] buffers = new ByteBuffer[names.length];
+		for (int i=0; i < names.length; i++) {
+			buffers[i] = op == 3
+				? ByteBuffer.allocateDirect(names[i].length)
+				: ByteBuffer.allocate(names[i].length);
+			buffers[i].put(names[i]).flip();
+		}
+		CharsetDecoder decoder = UTF7Charsets.IMAP_UTF_7.newDecoder();
+		long calls = 0;
+		long start = System.nanoTime();
+		long stop;
+		do {
+			for (int k=0; k < 100; k++) {
+				for (int i=0; i < names.length; i++) {
+					if (op == 0) {
+						try {
+							sink += decoder.decode(ByteBuffer.wrap(names[i]))
+								.length();
+						} catch (CharacterCodingException e) {
+							sink++;
+						}
+					} else if (op == 1) {
+						sink += UTF7Codec.isValidModified(names[i], 0,
+							names[i].length) ? 1 : 0;
+					} else {
+						sink += UTF7Codec.isValidModified(buffers[i]) ? 1 : 0;
+					}
+				}
+			}
+			calls += 100 * names.length;
+			stop = System.nanoTime();
+		} while (stop - start < RUN_NANOS);
+		return (double) (stop - start) / calls;
+	}
+
+	/**
+	 * Measures the validation of mailbox names.
+	 *
+	 * @param args	ignored
+	 * @throws Exception if US-ASCII is not supported
+	 */
+	@SuppressWarnings("boxing")
+	public static void main(String[] args) throws Exception {
+		byte[][] names = new byte[NAMES.length][];
+		for (int i=0; i < names.length; i++) {
+			names[i] = NAMES[i].getBytes("US-ASCII");
+		}
+		String[] ops = { "CharsetDecoder.decode",
+			"UTF7Codec.isValidModified(byte[])",
+			"UTF7Codec.isValidModified(heap ByteBuffer)",
+			"UTF7Codec.isValidModified(direct ByteBuffer)" };
+		for (int op=0; op < ops.length; op++) {
+			// warmup
+			test(names, op);
+			System.out.printf("%s: %.1f ns per name%n", ops[op],
+				test(names, op));
+		}
+	}
+}